@@ -48,17 +48,48 @@ public class BenchmarkCommand implements Callable<Integer> {
     @Option(names = { "--skipReportGeneration" })
     private boolean skipReportGeneration = false;
 
+    @Option(names = {
+            "--workers" }, description = "Number of local worker JVMs generating load on the same target. The results of all workers are merged.")
+    private int workers = 1;
+
+    @Option(names = {
+            "--workerBarrierTimeout" }, description = "Seconds a worker waits for the other workers before each benchmark run, before giving up.")
+    private int workerBarrierTimeout = 120;
+
+    @Option(names = {
+            "--soak" }, description = "Runs the long running soak test configured in the soak section instead of the benchmark suite.")
+    private boolean soak = false;
+
+    @Option(names = { "--workerId" }, hidden = true)
+    private int workerId = 0;
+
+    @Option(names = { "--coordinatorFolder" }, hidden = true)
+    private String coordinatorFolder;
+
     @Override
     public Integer call() throws Exception {
         log.info("Reading configuration from cfgFilePath={}", cfgFilePath);
         var benchmark = new SaplBenchmark(cfgFilePath, outputPath);
         if (!skipBenchmark) {
             log.info("Writing results to outputPath={}", outputPath);
-            benchmark.executeBenchmark();
+            if (soak) {
+                benchmark.executeSoakTest();
+            } else if (coordinatorFolder != null) {
+                benchmark.executeWorkerBenchmark(coordinatorFolder, workers, workerId, workerBarrierTimeout);
+            } else if (workers > 1) {
+                log.info("Generating load with {} workers", workers);
+                benchmark.executeDistributedBenchmark(workers, workerBarrierTimeout);
+            } else {
+                benchmark.executeBenchmark();
+            }
         }
         if (!skipReportGeneration) {
             log.info("Generating report in outputPath={}", outputPath);
-            benchmark.generateBenchmarkReports();
+            if (soak) {
+                benchmark.generateSoakReport();
+            } else {
+                benchmark.generateBenchmarkReports();
+            }
         }
         return 0;
     }
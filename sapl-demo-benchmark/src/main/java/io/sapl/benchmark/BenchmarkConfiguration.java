@@ -20,6 +20,7 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -250,6 +251,59 @@ public void setOauth2(Map<String, String> map) {
     @JsonProperty("fail_on_error")
     private boolean      failOnError = false;
 
+    // ---------------------------
+    // - JVM profiles
+    // ---------------------------
+    @Getter
+    private List<JvmProfile> jvmProfiles = new ArrayList<>();
+
+    @JsonProperty("jvm_profiles")
+    public void setJvmProfiles(List<Map<String, Object>> profiles) {
+        var names       = new HashSet<String>();
+        var newProfiles = new ArrayList<JvmProfile>(profiles.size());
+        for (var map : profiles) {
+            var name = String.valueOf(map.remove("name"));
+            if (!name.matches("[A-Za-z0-9_\\-]+")) {
+                throw new BenchmarkException("invalid jvm_profiles.name=" + name);
+            }
+            if (!names.add(name)) {
+                throw new BenchmarkException("duplicate jvm_profiles.name=" + name);
+            }
+            var args = new ArrayList<String>();
+            if (map.remove("jvm_args") instanceof List<?> list) {
+                list.forEach(arg -> args.add(String.valueOf(arg)));
+            }
+            failOnFurtherMapEntries(map.keySet(), "jvm_profiles." + name);
+            newProfiles.add(new JvmProfile(name, args));
+        }
+        this.jvmProfiles = newProfiles;
+    }
+
+    @JsonIgnore
+    public boolean usesJvmProfiles() {
+        return !jvmProfiles.isEmpty();
+    }
+
+    /**
+     * @return the profiles the benchmark suite is executed with. The common
+     *         jvm_args are prepended to the arguments of each profile. Without
+     *         configured profiles, a single default profile using the common
+     *         jvm_args is returned.
+     */
+    @JsonIgnore
+    public List<JvmProfile> getEffectiveJvmProfiles() {
+        if (!usesJvmProfiles()) {
+            return List.of(new JvmProfile(JvmProfile.DEFAULT_PROFILE_NAME, jvmArgs));
+        }
+        List<JvmProfile> effectiveProfiles = new ArrayList<>(jvmProfiles.size());
+        for (var profile : jvmProfiles) {
+            var args = new ArrayList<>(jvmArgs);
+            args.addAll(profile.getJvmArgs());
+            effectiveProfiles.add(new JvmProfile(profile.getName(), args));
+        }
+        return effectiveProfiles;
+    }
+
     // ---------------------------
     // - Average Response Time
     // ---------------------------
@@ -297,6 +351,165 @@ public void setThroughput(Map<String, Object> map) throws JsonProcessingExceptio
         failOnFurtherMapEntries(map.keySet(), "throughput");
     }
 
+    // ---------------------------
+    // - Combining algorithm scaling
+    // ---------------------------
+    private static final List<String> COMBINING_ALGORITHMS = List.of("DENY_UNLESS_PERMIT", "PERMIT_UNLESS_DENY",
+            "DENY_OVERRIDES", "PERMIT_OVERRIDES", "FIRST_APPLICABLE");
+
+    @Getter
+    private boolean      runCombiningAlgorithmBenchmark     = false;
+    @Getter
+    private List<String> combiningAlgorithms                = List.of("DENY_UNLESS_PERMIT", "DENY_OVERRIDES",
+            "PERMIT_OVERRIDES", "FIRST_APPLICABLE");
+    @Getter
+    private List<String> combiningAlgorithmPolicies         = List.of("100", "500");
+    @Getter
+    private List<String> combiningAlgorithmApplicableShares = List.of("0.01", "0.1", "0.5", "1.0");
+
+    private static List<String> listEntry(Map<String, Object> map, String key, List<String> defaultValue) {
+        var value = map.remove(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof List<?> list)) {
+            throw new BenchmarkException("configuration entry " + key + " must be a list");
+        }
+        return list.stream().map(String::valueOf).toList();
+    }
+
+    @JsonProperty("combining_algorithm")
+    public void setCombiningAlgorithm(Map<String, Object> map) {
+        this.runCombiningAlgorithmBenchmark     = Boolean.parseBoolean(String.valueOf(map.remove(ENABLED)));
+        this.combiningAlgorithms                = listEntry(map, "algorithms", combiningAlgorithms);
+        this.combiningAlgorithmPolicies         = listEntry(map, "policies", combiningAlgorithmPolicies);
+        this.combiningAlgorithmApplicableShares = listEntry(map, "applicable_share",
+                combiningAlgorithmApplicableShares);
+        for (var algorithm : combiningAlgorithms) {
+            if (!COMBINING_ALGORITHMS.contains(algorithm)) {
+                throw new BenchmarkException("invalid combining_algorithm.algorithms entry " + algorithm);
+            }
+        }
+        failOnFurtherMapEntries(map.keySet(), "combining_algorithm");
+    }
+
+    // ---------------------------
+    // - Payload size sweep
+    // ---------------------------
+    @Getter
+    private boolean      runPayloadSizeBenchmark = false;
+    @Getter
+    private List<String> payloadSizeBytes        = List.of("100", "1024", "10240", "102400", "1048576");
+
+    @JsonProperty("payload_size")
+    public void setPayloadSize(Map<String, Object> map) {
+        this.runPayloadSizeBenchmark = Boolean.parseBoolean(String.valueOf(map.remove(ENABLED)));
+        this.payloadSizeBytes        = listEntry(map, "bytes", payloadSizeBytes);
+        for (var bytes : payloadSizeBytes) {
+            if (!bytes.matches("\\d+")) {
+                throw new BenchmarkException("invalid payload_size.bytes entry " + bytes);
+            }
+        }
+        failOnFurtherMapEntries(map.keySet(), "payload_size");
+    }
+
+    // ---------------------------
+    // - Subscribe/cancel churn
+    // ---------------------------
+    @Getter
+    private boolean      runChurnBenchmark = false;
+    @Getter
+    private List<String> churnThreads      = List.of("1", "4", "8");
+
+    @JsonProperty("churn")
+    public void setChurn(Map<String, Object> map) {
+        this.runChurnBenchmark = Boolean.parseBoolean(String.valueOf(map.remove(ENABLED)));
+        this.churnThreads      = listEntry(map, "threads", churnThreads);
+        for (var threads : churnThreads) {
+            if (!threads.matches("[1-9]\\d*")) {
+                throw new BenchmarkException("invalid churn.threads entry " + threads);
+            }
+        }
+        failOnFurtherMapEntries(map.keySet(), "churn");
+    }
+
+    /**
+     * The payload size sweep runs against every enabled PDP. Remote PDPs are only
+     * connected with the first enabled authentication method, as the
+     * authentication overhead does not depend on the payload size.
+     */
+    @JsonIgnore
+    public List<String> getPayloadSizePdps() {
+        List<String> pdps    = new ArrayList<>();
+        var          anyAuth = useNoAuth || useBasicAuth || useAuthApiKey || useOauth2;
+        if (runEmbeddedBenchmarks) {
+            pdps.add("embedded");
+        }
+        if (runHttpBenchmarks && anyAuth) {
+            pdps.add("http");
+        }
+        if (runRsocketBenchmarks && anyAuth) {
+            pdps.add("rsocket");
+        }
+        return pdps;
+    }
+
+    // ---------------------------
+    // - Soak test
+    // ---------------------------
+    @Getter
+    private String  soakPdp                   = "embedded";
+    @Getter
+    private String  soakAuth                  = "noauth";
+    @Getter
+    private Integer soakDurationMinutes       = 240;
+    @Getter
+    private Integer soakSampleIntervalSeconds = 60;
+    @Getter
+    private Integer soakWarmupSamples         = 5;
+    @Getter
+    private Integer soakThreads               = 4;
+    @Getter
+    private Integer soakDecideOncePercent     = 50;
+    @Getter
+    private Integer soakLongLivedStreams      = 100;
+    @Getter
+    private Integer soakStreamChurnPercent    = 10;
+    @Getter
+    private Integer soakMaxErrorPercent       = 1;
+
+    private static Integer intEntry(Map<String, Object> map, String key, Integer defaultValue) {
+        var value = map.remove(key);
+        return value == null ? defaultValue : Integer.valueOf(String.valueOf(value));
+    }
+
+    @JsonProperty("soak")
+    public void setSoak(Map<String, Object> map) {
+        var pdp = map.remove("pdp");
+        if (pdp != null) {
+            if (!List.of("embedded", "http", "rsocket").contains(String.valueOf(pdp))) {
+                throw new BenchmarkException("invalid soak.pdp=" + pdp);
+            }
+            this.soakPdp = String.valueOf(pdp);
+        }
+        var auth = map.remove("auth");
+        if (auth != null) {
+            if (!List.of("noauth", "basic", "apikey", "oauth2").contains(String.valueOf(auth))) {
+                throw new BenchmarkException("invalid soak.auth=" + auth);
+            }
+            this.soakAuth = String.valueOf(auth);
+        }
+        this.soakDurationMinutes       = intEntry(map, "duration_minutes", soakDurationMinutes);
+        this.soakSampleIntervalSeconds = intEntry(map, "sample_interval_seconds", soakSampleIntervalSeconds);
+        this.soakWarmupSamples         = intEntry(map, "warmup_samples", soakWarmupSamples);
+        this.soakThreads               = intEntry(map, "threads", soakThreads);
+        this.soakDecideOncePercent     = intEntry(map, "decide_once_percent", soakDecideOncePercent);
+        this.soakLongLivedStreams      = intEntry(map, "long_lived_streams", soakLongLivedStreams);
+        this.soakStreamChurnPercent    = intEntry(map, "stream_churn_percent", soakStreamChurnPercent);
+        this.soakMaxErrorPercent       = intEntry(map, "max_error_percent", soakMaxErrorPercent);
+        failOnFurtherMapEntries(map.keySet(), "soak");
+    }
+
     @JsonIgnore
     public String getBenchmarkPattern() {
         List<String> classes         = new ArrayList<>();
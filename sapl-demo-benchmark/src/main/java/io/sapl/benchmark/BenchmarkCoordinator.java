@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.sapl.benchmark.report.JmhResultMerger;
+import io.sapl.benchmark.util.BenchmarkException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates load with several local worker JVMs driving the same target. The
+ * coordinator hands the execution context (e.g. the ports of the PDP
+ * container) to the workers, which synchronize the start of each JMH run via
+ * a {@link io.sapl.benchmark.util.FileBarrier}. Since all workers use the same
+ * warmup and measurement durations, they also stop at the same time. After all
+ * workers terminated, their results are merged into the benchmark folder.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BenchmarkCoordinator {
+    static final String WORKER_CONTEXT_FILE = "worker_context.json";
+    static final String BARRIER_FOLDER      = "barrier";
+    static final String WORKERS_FOLDER      = "workers";
+
+    private final String cfgFilePath;
+    private final String benchmarkFolder;
+    private final int    workers;
+    private final int    workerBarrierTimeout;
+
+    public void run(BenchmarkExecutionContext context) {
+        try {
+            Files.writeString(Paths.get(benchmarkFolder, WORKER_CONTEXT_FILE), context.toJsonString(),
+                    StandardCharsets.UTF_8);
+            List<Path>    workerFolders = new ArrayList<>(workers);
+            List<Process> processes     = new ArrayList<>(workers);
+            for (int workerId = 0; workerId < workers; workerId++) {
+                var workerFolder = Paths.get(benchmarkFolder, WORKERS_FOLDER, "worker_" + workerId);
+                Files.createDirectories(workerFolder);
+                workerFolders.add(workerFolder);
+                processes.add(startWorker(workerId, workerFolder));
+            }
+            for (int workerId = 0; workerId < workers; workerId++) {
+                var exitCode = processes.get(workerId).waitFor();
+                if (exitCode != 0) {
+                    processes.forEach(Process::destroy);
+                    throw new BenchmarkException("Worker " + workerId + " failed with exit code " + exitCode
+                            + ", see " + workerFolders.get(workerId) + ".log");
+                }
+            }
+            JmhResultMerger.mergeWorkerResults(workerFolders, Paths.get(benchmarkFolder));
+        } catch (IOException e) {
+            throw new BenchmarkException("Distributed benchmark failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkException("Interrupted while waiting for benchmark workers", e);
+        }
+    }
+
+    private Process startWorker(int workerId, Path workerFolder) throws IOException {
+        var javaBinary = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        var command    = List.of(javaBinary, "-cp", System.getProperty("java.class.path"),
+                BenchmarkCommand.class.getName(), "--cfg", cfgFilePath, "--output", workerFolder.toString(),
+                "--skipReportGeneration", "--workers", String.valueOf(workers), "--workerId",
+                String.valueOf(workerId), "--workerBarrierTimeout", String.valueOf(workerBarrierTimeout),
+                "--coordinatorFolder", benchmarkFolder);
+        log.info("starting benchmark worker {}: {}", workerId, command);
+        return new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(new File(workerFolder + ".log")).start();
+    }
+}
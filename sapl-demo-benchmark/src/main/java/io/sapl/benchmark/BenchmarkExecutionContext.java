@@ -52,6 +52,11 @@ public class BenchmarkExecutionContext {
     private String                    oauth2ClientId;
     private boolean                   useSsl;
     private AuthorizationSubscription authorizationSubscription;
+    private String                    pdpContainerId;
+    private String                    payloadHttpBaseUrl;
+    private String                    payloadRsocketHost;
+    private Integer                   payloadRsocketPort;
+    private String                    payloadPdpContainerId;
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     @SneakyThrows
@@ -64,28 +69,59 @@ public String toJsonString() {
         return MAPPER.writeValueAsString(this);
     }
 
+    /**
+     * The PDP of the payload size sweep serves its own policies, so it is a
+     * separate container in a docker environment. A remote target has to serve
+     * them itself.
+     */
+    public BenchmarkExecutionContext payloadPdpContext() {
+        var context = fromString(toJsonString());
+        context.httpBaseUrl    = payloadHttpBaseUrl;
+        context.rsocketHost    = payloadRsocketHost;
+        context.rsocketPort    = payloadRsocketPort;
+        context.pdpContainerId = payloadPdpContainerId;
+        return context;
+    }
+
+    private static String httpBaseUrl(GenericContainer<?> container, boolean useSsl) {
+        // noinspection HttpUrlsUsage
+        return (useSsl ? "https://" : "http://") + container.getHost() + ":"
+                + container.getMappedPort(DOCKER_DEFAULT_HTTP_PORT);
+    }
+
     public static BenchmarkExecutionContext fromBenchmarkConfiguration(BenchmarkConfiguration cfg,
             GenericContainer<?> pdpContainer, GenericContainer<?> oauthContainer) {
+        return fromBenchmarkConfiguration(cfg, pdpContainer, null, oauthContainer);
+    }
+
+    public static BenchmarkExecutionContext fromBenchmarkConfiguration(BenchmarkConfiguration cfg,
+            GenericContainer<?> pdpContainer, GenericContainer<?> payloadPdpContainer,
+            GenericContainer<?> oauthContainer) {
         var context = new BenchmarkExecutionContext();
         context.authorizationSubscription = cfg.getAuthorizationSubscription();
         if (cfg.requiredDockerEnvironment()) {
-            context.rsocketHost = pdpContainer.getHost();
-            context.rsocketPort = pdpContainer.getMappedPort(DOCKER_DEFAULT_RSOCKET_PORT);
-            context.useSsl      = cfg.isDockerUseSsl();
-            if (context.useSsl) {
-                context.httpBaseUrl = "https://" + pdpContainer.getHost() + ":"
-                        + pdpContainer.getMappedPort(DOCKER_DEFAULT_HTTP_PORT);
-            } else {
-                // noinspection HttpUrlsUsage
-                context.httpBaseUrl = "http://" + pdpContainer.getHost() + ":"
-                        + pdpContainer.getMappedPort(DOCKER_DEFAULT_HTTP_PORT);
-            }
+            context.rsocketHost    = pdpContainer.getHost();
+            context.rsocketPort    = pdpContainer.getMappedPort(DOCKER_DEFAULT_RSOCKET_PORT);
+            context.useSsl         = cfg.isDockerUseSsl();
+            context.pdpContainerId = pdpContainer.getContainerId();
+            context.httpBaseUrl    = httpBaseUrl(pdpContainer, context.useSsl);
         } else {
             context.rsocketHost = cfg.getRemoteRsocketHost();
             context.rsocketPort = cfg.getRemoteRsocketPort();
             context.useSsl      = cfg.isRemoteUseSsl();
             context.httpBaseUrl = cfg.getRemoteBaseUrl();
         }
+        if (payloadPdpContainer != null) {
+            context.payloadRsocketHost    = payloadPdpContainer.getHost();
+            context.payloadRsocketPort    = payloadPdpContainer.getMappedPort(DOCKER_DEFAULT_RSOCKET_PORT);
+            context.payloadPdpContainerId = payloadPdpContainer.getContainerId();
+            context.payloadHttpBaseUrl    = httpBaseUrl(payloadPdpContainer, context.useSsl);
+        } else {
+            context.payloadRsocketHost    = context.rsocketHost;
+            context.payloadRsocketPort    = context.rsocketPort;
+            context.payloadPdpContainerId = context.pdpContainerId;
+            context.payloadHttpBaseUrl    = context.httpBaseUrl;
+        }
         context.basicClientKey    = cfg.getBasicClientKey();
         context.basicClientSecret = cfg.getBasicClientSecret();
         context.apiKeyHeader      = cfg.getApiKeyHeader();
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A named set of JVM arguments (e.g. garbage collector and heap settings) the
+ * whole benchmark suite is executed with. Results of each profile are stored in
+ * a sub folder named after the profile.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class JvmProfile {
+    public static final String DEFAULT_PROFILE_NAME = "default";
+
+    private final String       name;
+    private final List<String> jvmArgs;
+}
@@ -17,16 +17,23 @@
  */
 package io.sapl.benchmark;
 
+import static io.sapl.benchmark.report.ReportGenerator.COMBINING_ALGORITHM_RESULT_FILE;
+import static io.sapl.benchmark.report.ReportGenerator.PAYLOAD_SIZE_RESULT_FILE;
 import static io.sapl.benchmark.report.ReportGenerator.generateHTMLReport;
+import static io.sapl.benchmark.report.ReportGenerator.generateJvmProfileComparisonReport;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -39,22 +46,35 @@
 import org.testcontainers.containers.wait.strategy.Wait;
 import org.testcontainers.utility.DockerImageName;
 
+import io.sapl.benchmark.jmh.ChurnBenchmark;
+import io.sapl.benchmark.jmh.CombiningAlgorithmBenchmark;
+import io.sapl.benchmark.jmh.CpuEfficiencyProfiler;
+import io.sapl.benchmark.jmh.PayloadSizeBenchmark;
+import io.sapl.benchmark.report.SoakReportGenerator;
+import io.sapl.benchmark.soak.SoakTest;
+import io.sapl.benchmark.util.BenchmarkException;
+import io.sapl.benchmark.util.FileBarrier;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 public class SaplBenchmark {
     private final BenchmarkConfiguration config;
     private GenericContainer<?>          pdpContainer;
     private GenericContainer<?>          oauth2Container;
+    private final String                 cfgFilePath;
     private final String                 benchmarkFolder;
+    private FileBarrier                  workerBarrier;
 
     public SaplBenchmark(String cfgFilePath, String benchmarkFolder) throws IOException {
         this.config          = BenchmarkConfiguration.fromFile(cfgFilePath);
+        this.cfgFilePath     = cfgFilePath;
         this.benchmarkFolder = benchmarkFolder;
         Files.createDirectories(Paths.get(benchmarkFolder));
         var sourceFile = new File(cfgFilePath);
         FileUtils.copyFile(sourceFile, new File(benchmarkFolder + File.separator + sourceFile.getName()));
     }
 
-    private void configureAndStartServerLtContainer(GenericContainer<?> container) {
-        this.pdpContainer = container;
+    private void configureAndStartServerLtContainer(GenericContainer<?> container, String policyFolder) {
         if (container == null) {
             return;
         }
@@ -64,7 +84,7 @@ private void configureAndStartServerLtContainer(GenericContainer<?> container) {
 
         var errorLogLevel = "ERROR";
         container.withClasspathResourceMapping("keystore.p12", dockerKeystoreLocation, BindMode.READ_ONLY)
-                .withClasspathResourceMapping("policies/", "/pdp/data/", BindMode.READ_ONLY)
+                .withClasspathResourceMapping(policyFolder, "/pdp/data/", BindMode.READ_ONLY)
                 .withEnv("io_sapl_pdp_embedded_policies-path", "/pdp/data").withEnv("spring_profiles_active", "local")
                 .withExposedPorts(BenchmarkConfiguration.DOCKER_DEFAULT_HTTP_PORT,
                         BenchmarkConfiguration.DOCKER_DEFAULT_RSOCKET_PORT)
@@ -118,12 +138,14 @@ private void configureAndStartServerLtContainer(GenericContainer<?> container) {
         container.start();
     }
 
-    void startResponseTimeBenchmark(BenchmarkExecutionContext context) throws RunnerException {
+    void startResponseTimeBenchmark(BenchmarkExecutionContext context, JvmProfile profile, String resultFolder)
+            throws RunnerException {
+        awaitWorkers(profile.getName() + "_response_time");
         ChainedOptionsBuilder builder = new OptionsBuilder().include(config.getBenchmarkPattern());
         builder.param("contextJsonString", context.toJsonString());
-        builder.jvmArgs(config.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
+        builder.jvmArgs(profile.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
                 .mode(Mode.AverageTime).timeUnit(TimeUnit.MILLISECONDS).resultFormat(ResultFormatType.JSON)
-                .result(benchmarkFolder + "/average_response.json").output(benchmarkFolder + "/average_response.log")
+                .result(resultFolder + "/average_response.json").output(resultFolder + "/average_response.log")
                 .shouldDoGC(true).forks(config.forks)
                 .warmupTime(TimeValue.seconds(config.getResponseTimeWarmupSeconds()))
                 .warmupIterations(config.getResponseTimeWarmupIterations()).syncIterations(true)
@@ -133,14 +155,17 @@ void startResponseTimeBenchmark(BenchmarkExecutionContext context) throws Runner
         new Runner(benchmarkOptions).run();
     }
 
-    void startThroughputBenchmark(BenchmarkExecutionContext context) throws RunnerException {
+    void startThroughputBenchmark(BenchmarkExecutionContext context, JvmProfile profile, String resultFolder)
+            throws RunnerException {
         for (int threads : config.getThroughputThreadList()) {
+            awaitWorkers(profile.getName() + "_throughput_" + threads);
             ChainedOptionsBuilder builder = new OptionsBuilder().include(config.getBenchmarkPattern());
             builder.param("contextJsonString", context.toJsonString());
-            builder.jvmArgs(config.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
+            builder.addProfiler(CpuEfficiencyProfiler.class, getCpuEfficiencyProfilerOptions(context));
+            builder.jvmArgs(profile.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
                     .mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).resultFormat(ResultFormatType.JSON)
-                    .result(benchmarkFolder + "/throughput_" + threads + "threads.json")
-                    .output(benchmarkFolder + "/throughput_" + threads + "threads.log").shouldDoGC(true)
+                    .result(resultFolder + "/throughput_" + threads + "threads.json")
+                    .output(resultFolder + "/throughput_" + threads + "threads.log").shouldDoGC(true)
                     .threads(threads).forks(config.forks).warmupIterations(config.getThroughputWarmupIterations())
                     .warmupTime(TimeValue.seconds(config.getThroughputWarmupSeconds())).syncIterations(true)
                     .measurementIterations(config.getThroughputMeasurementIterations())
@@ -150,33 +175,205 @@ void startThroughputBenchmark(BenchmarkExecutionContext context) throws RunnerEx
         }
     }
 
+    /**
+     * The CPU time of the PDP is sampled from the cgroup of the container, if the
+     * benchmark started the PDP container.
+     */
+    private static String getCpuEfficiencyProfilerOptions(BenchmarkExecutionContext context) {
+        return CpuEfficiencyProfiler.options(context.getPdpContainerId());
+    }
+
+    void startCombiningAlgorithmBenchmark(JvmProfile profile, String resultFolder) throws RunnerException {
+        awaitWorkers(profile.getName() + "_combining_algorithm");
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include("^" + CombiningAlgorithmBenchmark.class.getName() + ".decideOnce$");
+        builder.param("algorithm", config.getCombiningAlgorithms().toArray(new String[0]))
+                .param("policies", config.getCombiningAlgorithmPolicies().toArray(new String[0]))
+                .param("applicableShare", config.getCombiningAlgorithmApplicableShares().toArray(new String[0]));
+        builder.jvmArgs(profile.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
+                .mode(Mode.AverageTime).timeUnit(TimeUnit.MICROSECONDS).resultFormat(ResultFormatType.JSON)
+                .result(resultFolder + "/" + COMBINING_ALGORITHM_RESULT_FILE)
+                .output(resultFolder + "/combining_algorithm.log").shouldDoGC(true).forks(config.forks)
+                .warmupTime(TimeValue.seconds(config.getResponseTimeWarmupSeconds()))
+                .warmupIterations(config.getResponseTimeWarmupIterations()).syncIterations(true)
+                .measurementIterations(config.getResponseTimeMeasurementIterations())
+                .measurementTime(TimeValue.seconds(config.getResponseTimeMeasurementSeconds()));
+        var benchmarkOptions = builder.build();
+        new Runner(benchmarkOptions).run();
+    }
+
+    /**
+     * Runs the payload size sweep with the GC profiler, whose normalized
+     * allocation rate (gc.alloc.rate.norm) gives the allocated bytes per
+     * decision.
+     */
+    void startPayloadSizeBenchmark(BenchmarkExecutionContext context, JvmProfile profile, String resultFolder)
+            throws RunnerException {
+        awaitWorkers(profile.getName() + "_payload_size");
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include("^" + PayloadSizeBenchmark.class.getName() + ".(transform|filter)DecideOnce$");
+        builder.param("contextJsonString", context.toJsonString())
+                .param("pdp", config.getPayloadSizePdps().toArray(new String[0]))
+                .param("payloadBytes", config.getPayloadSizeBytes().toArray(new String[0]));
+        builder.jvmArgs(profile.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
+                .addProfiler(GCProfiler.class).mode(Mode.AverageTime).timeUnit(TimeUnit.MILLISECONDS)
+                .resultFormat(ResultFormatType.JSON).result(resultFolder + "/" + PAYLOAD_SIZE_RESULT_FILE)
+                .output(resultFolder + "/payload_size.log").shouldDoGC(true).forks(config.forks)
+                .warmupTime(TimeValue.seconds(config.getResponseTimeWarmupSeconds()))
+                .warmupIterations(config.getResponseTimeWarmupIterations()).syncIterations(true)
+                .measurementIterations(config.getResponseTimeMeasurementIterations())
+                .measurementTime(TimeValue.seconds(config.getResponseTimeMeasurementSeconds()));
+        var benchmarkOptions = builder.build();
+        new Runner(benchmarkOptions).run();
+    }
+
+    void startChurnBenchmark(JvmProfile profile, String resultFolder) throws RunnerException {
+        for (var threads : config.getChurnThreads()) {
+            awaitWorkers(profile.getName() + "_churn_" + threads);
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .include("^" + ChurnBenchmark.class.getName() + ".subscribeFirstDecisionCancel$");
+            builder.jvmArgs(profile.getJvmArgs().toArray(new String[0])).shouldFailOnError(config.isFailOnError())
+                    .mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).resultFormat(ResultFormatType.JSON)
+                    .result(resultFolder + "/churn_" + threads + "threads.json")
+                    .output(resultFolder + "/churn_" + threads + "threads.log").shouldDoGC(true)
+                    .threads(Integer.parseInt(threads)).forks(config.forks)
+                    .warmupIterations(config.getThroughputWarmupIterations())
+                    .warmupTime(TimeValue.seconds(config.getThroughputWarmupSeconds())).syncIterations(true)
+                    .measurementIterations(config.getThroughputMeasurementIterations())
+                    .measurementTime(TimeValue.seconds(config.getThroughputMeasurementSeconds()));
+            var benchmarkOptions = builder.build();
+            new Runner(benchmarkOptions).run();
+        }
+    }
+
+    /**
+     * Results of a benchmark without jvm_profiles are stored directly in the
+     * benchmark folder. With jvm_profiles, each profile gets its own sub folder.
+     */
+    private String getResultFolder(JvmProfile profile) {
+        if (!config.usesJvmProfiles()) {
+            return benchmarkFolder;
+        }
+        return benchmarkFolder + File.separator + profile.getName();
+    }
+
     void generateBenchmarkReports() throws IOException {
-        generateHTMLReport(benchmarkFolder);
+        if (!config.usesJvmProfiles()) {
+            generateHTMLReport(benchmarkFolder);
+            return;
+        }
+        List<String> profileNames = config.getJvmProfiles().stream().map(JvmProfile::getName).toList();
+        for (var profileName : profileNames) {
+            generateHTMLReport(benchmarkFolder + File.separator + profileName);
+        }
+        generateJvmProfileComparisonReport(benchmarkFolder, profileNames);
+    }
+
+    /**
+     * In worker mode, each JMH run starts only after all workers are ready.
+     */
+    private void awaitWorkers(String phase) {
+        if (workerBarrier != null) {
+            workerBarrier.await(phase);
+        }
     }
 
-    private void startBenchmarks() throws RunnerException {
-        var context = BenchmarkExecutionContext.fromBenchmarkConfiguration(config, pdpContainer, oauth2Container);
-        startResponseTimeBenchmark(context);
-        startThroughputBenchmark(context);
+    private void startBenchmarks(BenchmarkExecutionContext context) throws RunnerException {
+        for (var profile : config.getEffectiveJvmProfiles()) {
+            var resultFolder = getResultFolder(profile);
+            try {
+                Files.createDirectories(Paths.get(resultFolder));
+            } catch (IOException e) {
+                throw new BenchmarkException("Unable to create result folder " + resultFolder, e);
+            }
+            log.info("Running benchmark suite for jvm profile {} with jvm_args={}", profile.getName(),
+                    profile.getJvmArgs());
+            startResponseTimeBenchmark(context, profile, resultFolder);
+            startThroughputBenchmark(context, profile, resultFolder);
+            if (config.isRunCombiningAlgorithmBenchmark()) {
+                startCombiningAlgorithmBenchmark(profile, resultFolder);
+            }
+            if (config.isRunPayloadSizeBenchmark()) {
+                startPayloadSizeBenchmark(context, profile, resultFolder);
+            }
+            if (config.isRunChurnBenchmark()) {
+                startChurnBenchmark(profile, resultFolder);
+            }
+        }
     }
 
     public void executeBenchmark() throws RunnerException {
+        executeInBenchmarkEnvironment(this::startBenchmarks);
+    }
+
+    /**
+     * Starts the benchmark environment and generates the load with several
+     * worker JVMs, see {@link BenchmarkCoordinator}.
+     */
+    public void executeDistributedBenchmark(int workers, int workerBarrierTimeout) throws RunnerException {
+        executeInBenchmarkEnvironment(context -> new BenchmarkCoordinator(cfgFilePath, benchmarkFolder, workers,
+                workerBarrierTimeout).run(context));
+    }
+
+    /**
+     * Executes the benchmark as one of several workers started by a
+     * {@link BenchmarkCoordinator}. The benchmark environment is provided by the
+     * coordinator. A worker fails if the other workers do not arrive at the start
+     * of a JMH run within workerBarrierTimeout seconds, e.g., because one of them
+     * crashed.
+     */
+    public void executeWorkerBenchmark(String coordinatorFolder, int workers, int workerId, int workerBarrierTimeout)
+            throws RunnerException, IOException {
+        var context = BenchmarkExecutionContext.fromString(Files.readString(
+                Paths.get(coordinatorFolder, BenchmarkCoordinator.WORKER_CONTEXT_FILE), StandardCharsets.UTF_8));
+        this.workerBarrier = new FileBarrier(Paths.get(coordinatorFolder, BenchmarkCoordinator.BARRIER_FOLDER),
+                workers, "worker_" + workerId, Duration.ofSeconds(workerBarrierTimeout));
+        startBenchmarks(context);
+    }
+
+    /**
+     * Runs the long running mixed workload configured in the soak section instead
+     * of the JMH suite, see {@link SoakTest}.
+     */
+    public void executeSoakTest() throws RunnerException {
+        executeInBenchmarkEnvironment(context -> new SoakTest(config, context, benchmarkFolder).run());
+    }
+
+    void generateSoakReport() throws IOException {
+        SoakReportGenerator.generateSoakReport(benchmarkFolder, config.getSoakWarmupSamples());
+    }
+
+    private void executeInBenchmarkEnvironment(BenchmarkRun benchmarkRun) throws RunnerException {
         var useOAuthContainer    = config.isUseOauth2() && config.isOauth2MockServer();
         var useServerLTContainer = config.requiredDockerEnvironment();
+        // the payload policies are kept out of the corpus of the other benchmarks
+        var usePayloadContainer  = useServerLTContainer && config.isRunPayloadSizeBenchmark()
+                && config.getPayloadSizePdps().stream().anyMatch(pdp -> !"embedded".equals(pdp));
 
         try (var oauth2Cont = useOAuthContainer
                 ? new GenericContainer<>(DockerImageName.parse(config.getOauth2MockImage()))
                 : null;
                 var pdpCont = useServerLTContainer
+                        ? new GenericContainer<>(DockerImageName.parse(config.getDockerPdpImage()))
+                        : null;
+                var payloadPdpCont = usePayloadContainer
                         ? new GenericContainer<>(DockerImageName.parse(config.getDockerPdpImage()))
                         : null) {
             configureAndStartOAuthContainer(oauth2Cont);
-            configureAndStartServerLtContainer(pdpCont);
-            startBenchmarks();
-            stopContainersIfRunning(oauth2Cont, pdpCont);
+            this.pdpContainer = pdpCont;
+            configureAndStartServerLtContainer(pdpCont, "policies/");
+            configureAndStartServerLtContainer(payloadPdpCont, PayloadSizeBenchmark.POLICY_FOLDER + "/");
+            benchmarkRun.run(BenchmarkExecutionContext.fromBenchmarkConfiguration(config, pdpContainer,
+                    payloadPdpCont, oauth2Container));
+            stopContainersIfRunning(oauth2Cont, pdpCont, payloadPdpCont);
         }
     }
 
+    @FunctionalInterface
+    private interface BenchmarkRun {
+        void run(BenchmarkExecutionContext context) throws RunnerException;
+    }
+
     void configureAndStartOAuthContainer(GenericContainer<?> container) {
         this.oauth2Container = container;
         if (container == null) {
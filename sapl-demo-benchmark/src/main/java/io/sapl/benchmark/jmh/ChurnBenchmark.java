@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.jmh;
+
+import static io.sapl.benchmark.jmh.Helper.decide;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.benchmark.util.BenchmarkException;
+import io.sapl.benchmark.util.EchoPIP;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measures the rate of decide() streams which are subscribed, receive their
+ * first decision and are cancelled again, as done by a web PEP for every
+ * request. With attributes, the policy subscribes the echo.stream attribute,
+ * so each decision additionally subscribes and cancels a PIP stream.
+ * <p>
+ * After every iteration, all PIP streams must have been cancelled and the
+ * thread count must be back at its baseline. Otherwise, the benchmark fails
+ * with a {@link BenchmarkException}.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+public class ChurnBenchmark {
+    // kept out of the policies folder, which is the corpus of the other benchmarks
+    public static final String POLICY_FOLDER = "churn_policies";
+
+    private static final long RELEASE_TIMEOUT_MILLIS = 5000;
+
+    /*
+     * Scheduler threads are started lazily, at most one per core for the
+     * parallel scheduler. A thread leaked per subscription exceeds this by far.
+     */
+    private static final int THREAD_TOLERANCE = Runtime.getRuntime().availableProcessors();
+
+    private static final AuthorizationSubscription STATIC_SUBSCRIPTION    = AuthorizationSubscription.of("Willi",
+            "churn_static", "session");
+    private static final AuthorizationSubscription ATTRIBUTE_SUBSCRIPTION = AuthorizationSubscription.of("Willi",
+            "churn_attribute", "session");
+
+    @Param({ "false", "true" })
+    boolean attributes;
+
+    private EmbeddedPolicyDecisionPoint pdp;
+    private AuthorizationSubscription   subscription;
+    private int                         baselineStreams;
+    private int                         baselineThreads;
+
+    @Setup(Level.Trial)
+    public void setup() throws InitializationException {
+        log.info("initializing embedded PDP for subscribe/cancel churn, attributes={}", attributes);
+        pdp             = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint("/" + POLICY_FOLDER, List::of,
+                () -> List.of(EchoPIP.class), List::of, List::of);
+        subscription    = attributes ? ATTRIBUTE_SUBSCRIPTION : STATIC_SUBSCRIPTION;
+        // the first decision starts the schedulers used for every decision
+        decide(pdp, subscription);
+        baselineStreams = EchoPIP.activeStreams();
+        baselineThreads = threadCount();
+    }
+
+    /**
+     * Verifies that the PIP streams and threads of all cancelled subscriptions are
+     * released.
+     */
+    @TearDown(Level.Iteration)
+    public void verifyResourcesReleased() throws InterruptedException {
+        var deadline = System.currentTimeMillis() + RELEASE_TIMEOUT_MILLIS;
+        while ((EchoPIP.activeStreams() > baselineStreams || threadCount() > baselineThreads + THREAD_TOLERANCE)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        var streams = EchoPIP.activeStreams();
+        var threads = threadCount();
+        log.info("after iteration: {} active PIP streams (baseline {}), {} threads (baseline {})", streams,
+                baselineStreams, threads, baselineThreads);
+        if (streams > baselineStreams) {
+            throw new BenchmarkException((streams - baselineStreams) + " PIP streams were not released within "
+                    + RELEASE_TIMEOUT_MILLIS + "ms after cancelling their decide() subscriptions");
+        }
+        if (threads > baselineThreads + THREAD_TOLERANCE) {
+            throw new BenchmarkException((threads - baselineThreads) + " threads more than at trial setup were "
+                    + "still alive " + RELEASE_TIMEOUT_MILLIS + "ms after cancelling the decide() subscriptions");
+        }
+    }
+
+    private static int threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pdp.destroy();
+    }
+
+    @Benchmark
+    public void subscribeFirstDecisionCancel() {
+        decide(pdp, subscription);
+    }
+}
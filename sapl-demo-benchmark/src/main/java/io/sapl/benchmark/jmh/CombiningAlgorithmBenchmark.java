@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.jmh;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.benchmark.util.PolicyCorpus;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measures how the evaluation cost of an embedded PDP scales with the number
+ * of applicable policies under different combining algorithms. For each trial
+ * a corpus of identical policies is generated, of which the given share has a
+ * target matching the subscription. All applicable policies permit.
+ * <p>
+ * FIRST_APPLICABLE is only available for policy sets, so in this case the
+ * corpus is a single policy set containing all policies. For all other
+ * algorithms, each policy is a document of its own and the algorithm is set in
+ * the pdp.json.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+public class CombiningAlgorithmBenchmark {
+    public static final String FIRST_APPLICABLE = "FIRST_APPLICABLE";
+
+    private static final AuthorizationSubscription SUBSCRIPTION = AuthorizationSubscription.of(
+            JsonNodeFactory.instance.objectNode().put("role", "doctor").put("department", "cardiology"), "read",
+            JsonNodeFactory.instance.objectNode().put("type", "patient_record").put("department", "cardiology"));
+
+    @Param({ "DENY_UNLESS_PERMIT", "DENY_OVERRIDES", "PERMIT_OVERRIDES", FIRST_APPLICABLE })
+    String algorithm;
+
+    @Param({ "100" })
+    int policies;
+
+    @Param({ "0.1" })
+    double applicableShare;
+
+    private Path                        policyFolder;
+    private EmbeddedPolicyDecisionPoint pdp;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InitializationException {
+        policyFolder = PolicyCorpus.createFolder("combining_algorithm_benchmark");
+        var applicable = applicablePolicies(policies, applicableShare);
+        log.info("initializing embedded PDP with {} policies ({} applicable) combined by {}", policies, applicable,
+                algorithm);
+        if (FIRST_APPLICABLE.equals(algorithm)) {
+            PolicyCorpus.writePdpConfiguration(policyFolder, "DENY_UNLESS_PERMIT");
+            var policySet = new StringBuilder("set \"tenant_policies\"\nfirst-applicable\n\n");
+            for (int i = 0; i < policies; i++) {
+                policySet.append(policy(i, isApplicable(i, policies, applicable))).append('\n');
+            }
+            PolicyCorpus.writeDocument(policyFolder, "tenant_policies", policySet.toString());
+        } else {
+            PolicyCorpus.writePdpConfiguration(policyFolder, algorithm);
+            for (int i = 0; i < policies; i++) {
+                PolicyCorpus.writeDocument(policyFolder, "policy_" + i,
+                        policy(i, isApplicable(i, policies, applicable)));
+            }
+        }
+        pdp = PolicyDecisionPointFactory.filesystemPolicyDecisionPoint(policyFolder.toString(), List::of, List::of,
+                List::of, List::of);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pdp.destroy();
+        PolicyCorpus.deleteFolder(policyFolder);
+    }
+
+    public static int applicablePolicies(int policies, double applicableShare) {
+        return Math.max(1, (int) Math.round(policies * applicableShare));
+    }
+
+    /**
+     * Spreads the applicable policies evenly over the corpus, the last policy is
+     * always applicable.
+     */
+    private static boolean isApplicable(int index, int policies, int applicable) {
+        return (long) (index + 1) * applicable / policies > (long) index * applicable / policies;
+    }
+
+    private static String policy(int index, boolean applicable) {
+        var action = applicable ? "read" : "read_" + index;
+        return "policy \"policy_" + index + "\"\npermit action == \"" + action + "\"\nwhere\n"
+                + "  subject.role == \"doctor\";\n  subject.department == resource.department;\n";
+    }
+
+    @Benchmark
+    public void decideOnce() {
+        Helper.decideOnce(pdp, SUBSCRIPTION);
+    }
+}
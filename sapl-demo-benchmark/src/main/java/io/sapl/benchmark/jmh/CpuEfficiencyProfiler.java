@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.jmh;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Samples the CPU time of the benchmark JVM (client) and, if the CPU accounting
+ * file of the PDP container's cgroup is given as profiler option, of the PDP
+ * container (server) around each throughput iteration. The results are
+ * reported as decisions per CPU-second and CPU-ms per decision.
+ * <p>
+ * The profiler runs in every forked JVM. Reading the cgroup file takes
+ * microseconds and needs no docker client, unlike the docker stats API which
+ * blocks for about a second per request. The file is resolved by the
+ * benchmark process, see {@link #cgroupCpuFile(String)}.
+ * <p>
+ * For embedded benchmarks the PDP runs in the benchmark JVM, so its CPU time is
+ * contained in the client values and no server values are reported.
+ */
+@Slf4j
+public class CpuEfficiencyProfiler implements InternalProfiler {
+    public static final String CLIENT_DECISIONS_PER_CPU_SECOND = "cpu.client.decisionsPerCpuSecond";
+    public static final String CLIENT_CPU_MS_PER_DECISION      = "cpu.client.cpuMsPerDecision";
+    public static final String SERVER_DECISIONS_PER_CPU_SECOND = "cpu.server.decisionsPerCpuSecond";
+    public static final String SERVER_CPU_MS_PER_DECISION      = "cpu.server.cpuMsPerDecision";
+
+    private static final String CGROUP_OPTION = "cgroup=";
+
+    /*
+     * Locations of the CPU accounting of a docker container for cgroup v2 and v1
+     * with the systemd and the cgroupfs driver.
+     */
+    private static final String[] CGROUP_CPU_FILES = { "/sys/fs/cgroup/system.slice/docker-%s.scope/cpu.stat",
+            "/sys/fs/cgroup/docker/%s/cpu.stat", "/sys/fs/cgroup/cpuacct/system.slice/docker-%s.scope/cpuacct.usage",
+            "/sys/fs/cgroup/cpuacct/docker/%s/cpuacct.usage" };
+
+    private static final String USAGE_USEC = "usage_usec ";
+
+    private final Path   cgroupCpuFile;
+    private long         startWallNanos;
+    private long         startClientCpuNanos;
+    private long         startServerCpuNanos;
+
+    public CpuEfficiencyProfiler(String initLine) {
+        this.cgroupCpuFile = initLine != null && initLine.startsWith(CGROUP_OPTION)
+                ? Path.of(initLine.substring(CGROUP_OPTION.length()))
+                : null;
+    }
+
+    /**
+     * @return the profiler option for the CPU accounting file of the container,
+     *         or an empty string if the file is not accessible, e.g., for a
+     *         docker daemon in a VM
+     */
+    public static String options(String containerId) {
+        var file = cgroupCpuFile(containerId);
+        return file == null ? "" : CGROUP_OPTION + file;
+    }
+
+    /**
+     * @return the CPU accounting file of the container's cgroup on this host, or
+     *         null if none is readable
+     */
+    public static Path cgroupCpuFile(String containerId) {
+        if (containerId == null || containerId.isEmpty()) {
+            return null;
+        }
+        for (var candidate : CGROUP_CPU_FILES) {
+            var file = Path.of(String.format(candidate, containerId));
+            if (Files.isReadable(file)) {
+                return file;
+            }
+        }
+        log.warn("no cgroup cpu accounting found for container {}, server cpu is not measured", containerId);
+        return null;
+    }
+
+    @Override
+    public String getDescription() {
+        return "CPU time per decision of the benchmark JVM and the PDP container";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        startServerCpuNanos = measuresServer(benchmarkParams) ? cgroupCpuNanos(cgroupCpuFile) : -1;
+        startClientCpuNanos = processCpuNanos();
+        startWallNanos      = System.nanoTime();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        var wallNanos      = System.nanoTime() - startWallNanos;
+        var clientCpuNanos = processCpuNanos() - startClientCpuNanos;
+        var serverCpuNanos = startServerCpuNanos < 0 ? -1
+                : cgroupCpuNanos(cgroupCpuFile) - startServerCpuNanos;
+        if (benchmarkParams.getMode() != Mode.Throughput) {
+            return List.of();
+        }
+        var decisions = result.getPrimaryResult().getScore() * wallNanos
+                / benchmarkParams.getTimeUnit().toNanos(1);
+        List<Result> results = new ArrayList<>(4);
+        addResults(results, decisions, clientCpuNanos, CLIENT_DECISIONS_PER_CPU_SECOND, CLIENT_CPU_MS_PER_DECISION);
+        if (serverCpuNanos >= 0) {
+            addResults(results, decisions, serverCpuNanos, SERVER_DECISIONS_PER_CPU_SECOND,
+                    SERVER_CPU_MS_PER_DECISION);
+        }
+        return results;
+    }
+
+    private static void addResults(List<Result> results, double decisions, long cpuNanos,
+            String decisionsPerCpuSecondLabel, String cpuMsPerDecisionLabel) {
+        if (decisions <= 0 || cpuNanos <= 0) {
+            return;
+        }
+        results.add(new ScalarResult(decisionsPerCpuSecondLabel, decisions / (cpuNanos / 1e9), "decisions/cpu-s",
+                AggregationPolicy.AVG));
+        results.add(new ScalarResult(cpuMsPerDecisionLabel, cpuNanos / 1e6 / decisions, "cpu-ms/decision",
+                AggregationPolicy.AVG));
+    }
+
+    private boolean measuresServer(BenchmarkParams benchmarkParams) {
+        return cgroupCpuFile != null && !benchmarkParams.getBenchmark().contains(EmbeddedBenchmark.class.getSimpleName());
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * @return the total CPU usage of the cgroup in nanoseconds, or -1 if
+     *         unavailable
+     */
+    static long cgroupCpuNanos(Path file) {
+        try {
+            var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (!file.getFileName().toString().equals("cpu.stat")) {
+                // cgroup v1 cpuacct.usage holds the nanoseconds only
+                return Long.parseLong(lines.get(0).trim());
+            }
+            for (var line : lines) {
+                if (line.startsWith(USAGE_USEC)) {
+                    return Long.parseLong(line.substring(USAGE_USEC.length()).trim()) * 1000L;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("unable to read cpu usage from {}", file, e);
+        }
+        return -1;
+    }
+}
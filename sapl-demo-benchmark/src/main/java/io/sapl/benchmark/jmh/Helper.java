@@ -17,18 +17,34 @@
  */
 package io.sapl.benchmark.jmh;
 
+import java.time.Duration;
+
+import javax.net.ssl.SSLException;
+
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 
+import io.netty.channel.ChannelOption;
 import io.sapl.api.pdp.AuthorizationSubscription;
 import io.sapl.api.pdp.Decision;
 import io.sapl.api.pdp.PolicyDecisionPoint;
 import io.sapl.benchmark.BenchmarkExecutionContext;
 import io.sapl.benchmark.util.BenchmarkException;
+import io.sapl.pdp.remote.RemoteHttpPolicyDecisionPoint;
+import io.sapl.pdp.remote.RemotePolicyDecisionPoint;
+import io.sapl.pdp.remote.RemoteRsocketPolicyDecisionPoint;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
 public class Helper {
+    public static final String NOAUTH = "noauth";
+    public static final String BASIC  = "basic";
+    public static final String APIKEY = "apikey";
+    public static final String OAUTH2 = "oauth2";
+
+    private static final String OAUTH2_REGISTRATION_ID = "saplPdp";
+
     private Helper() {
         throw new IllegalStateException("Utility class");
     }
@@ -55,4 +71,54 @@ public static ReactiveClientRegistrationRepository getClientRegistrationReposito
                         .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
                         .scope(config.getOauth2Scope()).build());
     }
+
+    public static boolean isAuthEnabled(BenchmarkExecutionContext context, String auth) {
+        return switch (auth) {
+        case NOAUTH -> context.isUseNoAuth();
+        case BASIC -> context.isUseBasicAuth();
+        case APIKEY -> context.isUseAuthApiKey();
+        case OAUTH2 -> context.isUseOauth2();
+        default -> false;
+        };
+    }
+
+    public static PolicyDecisionPoint httpPdp(BenchmarkExecutionContext context, String auth) throws SSLException {
+        var builder = RemotePolicyDecisionPoint.builder().http().baseUrl(context.getHttpBaseUrl())
+                .withHttpClient(HttpClient.create().responseTimeout(Duration.ofSeconds(10))).withUnsecureSSL()
+                // set SO_LINGER to 0 so that the http sockets are closed immediately ->
+                // TIME_WAIT
+                .option(ChannelOption.SO_LINGER, 0);
+        return withAuth(builder, context, auth).build();
+    }
+
+    public static PolicyDecisionPoint rsocketPdp(BenchmarkExecutionContext context, String auth)
+            throws SSLException {
+        var builder = RemotePolicyDecisionPoint.builder().rsocket().host(context.getRsocketHost())
+                .port(context.getRsocketPort()).withUnsecureSSL();
+        return withAuth(builder, context, auth).build();
+    }
+
+    private static RemoteHttpPolicyDecisionPoint.RemoteHttpPolicyDecisionPointBuilder withAuth(
+            RemoteHttpPolicyDecisionPoint.RemoteHttpPolicyDecisionPointBuilder builder,
+            BenchmarkExecutionContext context, String auth) {
+        return switch (auth) {
+        case NOAUTH -> builder;
+        case BASIC -> builder.basicAuth(context.getBasicClientKey(), context.getBasicClientSecret());
+        case APIKEY -> builder.apiKey(context.getApiKeyHeader(), context.getApiKey());
+        case OAUTH2 -> builder.oauth2(getClientRegistrationRepository(context), OAUTH2_REGISTRATION_ID);
+        default -> throw new BenchmarkException("Unknown authentication method: " + auth);
+        };
+    }
+
+    private static RemoteRsocketPolicyDecisionPoint.RemoteRsocketPolicyDecisionPointBuilder withAuth(
+            RemoteRsocketPolicyDecisionPoint.RemoteRsocketPolicyDecisionPointBuilder builder,
+            BenchmarkExecutionContext context, String auth) {
+        return switch (auth) {
+        case NOAUTH -> builder;
+        case BASIC -> builder.basicAuth(context.getBasicClientKey(), context.getBasicClientSecret());
+        case APIKEY -> builder.apiKey(context.getApiKeyHeader(), context.getApiKey());
+        case OAUTH2 -> builder.oauth2(getClientRegistrationRepository(context), OAUTH2_REGISTRATION_ID);
+        default -> throw new BenchmarkException("Unknown authentication method: " + auth);
+        };
+    }
 }
@@ -19,12 +19,9 @@
 
 import static io.sapl.benchmark.jmh.Helper.decide;
 import static io.sapl.benchmark.jmh.Helper.decideOnce;
-import static io.sapl.benchmark.jmh.Helper.getClientRegistrationRepository;
+import static io.sapl.benchmark.jmh.Helper.httpPdp;
 
 import java.io.IOException;
-import java.time.Duration;
-
-import javax.net.ssl.SSLException;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Level;
@@ -33,13 +30,9 @@
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 
-import io.netty.channel.ChannelOption;
 import io.sapl.api.pdp.PolicyDecisionPoint;
 import io.sapl.benchmark.BenchmarkExecutionContext;
-import io.sapl.pdp.remote.RemoteHttpPolicyDecisionPoint;
-import io.sapl.pdp.remote.RemotePolicyDecisionPoint;
 import lombok.extern.slf4j.Slf4j;
-import reactor.netty.http.client.HttpClient;
 
 @Slf4j
 @State(Scope.Benchmark)
@@ -53,33 +46,24 @@ public class HttpBenchmark {
     private PolicyDecisionPoint       oauth2Pdp;
     private BenchmarkExecutionContext context;
 
-    private RemoteHttpPolicyDecisionPoint.RemoteHttpPolicyDecisionPointBuilder getBaseBuilder() throws SSLException {
-        return RemotePolicyDecisionPoint.builder().http().baseUrl(context.getHttpBaseUrl())
-                .withHttpClient(HttpClient.create().responseTimeout(Duration.ofSeconds(10))).withUnsecureSSL()
-                // set SO_LINGER to 0 so that the http sockets are closed immediately ->
-                // TIME_WAIT
-                .option(ChannelOption.SO_LINGER, 0);
-    }
-
     @Setup(Level.Trial)
     public void setup() throws IOException {
         context = BenchmarkExecutionContext.fromString(contextJsonString);
         log.info("initializing pdp connections");
         if (context.isUseNoAuth()) {
-            noauthPdp = getBaseBuilder().build();
+            noauthPdp = httpPdp(context, Helper.NOAUTH);
         }
 
         if (context.isUseBasicAuth()) {
-            basicAuthPdp = getBaseBuilder().basicAuth(context.getBasicClientKey(), context.getBasicClientSecret())
-                    .build();
+            basicAuthPdp = httpPdp(context, Helper.BASIC);
         }
 
         if (context.isUseAuthApiKey()) {
-            apiKeyPdp = getBaseBuilder().apiKey(context.getApiKeyHeader(), context.getApiKey()).build();
+            apiKeyPdp = httpPdp(context, Helper.APIKEY);
         }
 
         if (context.isUseOauth2()) {
-            oauth2Pdp = getBaseBuilder().oauth2(getClientRegistrationRepository(context), "saplPdp").build();
+            oauth2Pdp = httpPdp(context, Helper.OAUTH2);
         }
     }
 
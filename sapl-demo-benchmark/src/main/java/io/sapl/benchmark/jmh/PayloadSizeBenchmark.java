@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.jmh;
+
+import static io.sapl.benchmark.jmh.Helper.decideOnce;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.benchmark.BenchmarkExecutionContext;
+import io.sapl.benchmark.util.BenchmarkException;
+import io.sapl.benchmark.util.EchoPIP;
+import io.sapl.benchmark.util.Payloads;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measures how the decision latency grows with the size of the resource in the
+ * subscription. The transform benchmark is answered by a policy rewriting the
+ * resource in its transformation, the filter benchmark by a policy selecting
+ * entries of the resource in its where clause and obligation, see the
+ * policies in the payload_policies folder. They are kept out of the policies
+ * folder, so the corpus of the other benchmarks is not changed.
+ * <p>
+ * For the http and rsocket PDPs, the measured time additionally contains the
+ * serialization and transport of the subscription and the transformed
+ * resource. These PDPs are connected with the first enabled authentication
+ * method.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+public class PayloadSizeBenchmark {
+    public static final String POLICY_FOLDER = "payload_policies";
+
+    @Param({ "{}" })
+    String contextJsonString;
+
+    @Param({ "embedded", "http", "rsocket" })
+    String pdp;
+
+    @Param({ "100", "1024", "10240", "102400", "1048576" })
+    int payloadBytes;
+
+    private PolicyDecisionPoint       policyDecisionPoint;
+    private AuthorizationSubscription transformSubscription;
+    private AuthorizationSubscription filterSubscription;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InitializationException {
+        log.info("initializing {} PDP for payloads of {} bytes", pdp, payloadBytes);
+        policyDecisionPoint   = createPdp(BenchmarkExecutionContext.fromString(contextJsonString).payloadPdpContext());
+        transformSubscription = Payloads.subscriptionOfSize("transform", payloadBytes);
+        filterSubscription    = Payloads.subscriptionOfSize("filter", payloadBytes);
+    }
+
+    private PolicyDecisionPoint createPdp(BenchmarkExecutionContext context)
+            throws IOException, InitializationException {
+        return switch (pdp) {
+        case "embedded" -> PolicyDecisionPointFactory.resourcesPolicyDecisionPoint("/" + POLICY_FOLDER, List::of,
+                () -> List.of(EchoPIP.class), List::of, List::of);
+        case "http" -> Helper.httpPdp(context, authentication(context));
+        case "rsocket" -> Helper.rsocketPdp(context, authentication(context));
+        default -> throw new BenchmarkException("unknown pdp " + pdp);
+        };
+    }
+
+    private static String authentication(BenchmarkExecutionContext context) {
+        return Stream.of(Helper.NOAUTH, Helper.BASIC, Helper.APIKEY, Helper.OAUTH2)
+                .filter(auth -> Helper.isAuthEnabled(context, auth)).findFirst()
+                .orElseThrow(() -> new BenchmarkException("no authentication method enabled"));
+    }
+
+    @Benchmark
+    public void transformDecideOnce() {
+        decideOnce(policyDecisionPoint, transformSubscription);
+    }
+
+    @Benchmark
+    public void filterDecideOnce() {
+        decideOnce(policyDecisionPoint, filterSubscription);
+    }
+}
@@ -19,12 +19,10 @@
 
 import static io.sapl.benchmark.jmh.Helper.decide;
 import static io.sapl.benchmark.jmh.Helper.decideOnce;
-import static io.sapl.benchmark.jmh.Helper.getClientRegistrationRepository;
+import static io.sapl.benchmark.jmh.Helper.rsocketPdp;
 
 import java.io.IOException;
 
-import javax.net.ssl.SSLException;
-
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Param;
@@ -34,8 +32,6 @@
 
 import io.sapl.api.pdp.PolicyDecisionPoint;
 import io.sapl.benchmark.BenchmarkExecutionContext;
-import io.sapl.pdp.remote.RemotePolicyDecisionPoint;
-import io.sapl.pdp.remote.RemoteRsocketPolicyDecisionPoint;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -50,38 +46,24 @@ public class RsocketBenchmark {
     private PolicyDecisionPoint       oauth2Pdp;
     private BenchmarkExecutionContext context;
 
-    private RemoteRsocketPolicyDecisionPoint.RemoteRsocketPolicyDecisionPointBuilder getBaseBuilder() throws SSLException {
-        return RemotePolicyDecisionPoint.builder()
-            .rsocket()
-            .host(context.getRsocketHost())
-            .port(context.getRsocketPort())
-            .withUnsecureSSL();
-    }
-
     @Setup(Level.Trial)
     public void setup() throws IOException {
         context = BenchmarkExecutionContext.fromString(contextJsonString);
         log.info("initializing pdp connections");
         if (context.isUseNoAuth()) {
-            noauthPdp = getBaseBuilder().build();
+            noauthPdp = rsocketPdp(context, Helper.NOAUTH);
         }
 
         if (context.isUseBasicAuth()) {
-            basicAuthPdp = getBaseBuilder()
-                    .basicAuth(context.getBasicClientKey(), context.getBasicClientSecret())
-                    .build();
+            basicAuthPdp = rsocketPdp(context, Helper.BASIC);
         }
 
         if (context.isUseAuthApiKey()) {
-            apiKeyPdp = getBaseBuilder()
-                    .apiKey(context.getApiKeyHeader(), context.getApiKey())
-                    .build();
+            apiKeyPdp = rsocketPdp(context, Helper.APIKEY);
         }
 
         if (context.isUseOauth2()) {
-            oauth2Pdp = getBaseBuilder()
-                    .oauth2(getClientRegistrationRepository(context), "saplPdp")
-                    .build();
+            oauth2Pdp = rsocketPdp(context, Helper.OAUTH2);
         }
     }
 
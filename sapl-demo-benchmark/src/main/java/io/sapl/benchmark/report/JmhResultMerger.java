@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.report;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+import com.nimbusds.jose.shaded.gson.JsonArray;
+import com.nimbusds.jose.shaded.gson.JsonElement;
+import com.nimbusds.jose.shaded.gson.JsonObject;
+import com.nimbusds.jose.shaded.gson.JsonParser;
+import com.nimbusds.jose.shaded.gson.JsonPrimitive;
+
+import io.sapl.benchmark.jmh.CpuEfficiencyProfiler;
+import io.sapl.benchmark.util.BenchmarkException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Merges the JMH result files of several benchmark workers, which drove the
+ * same target at the same time, into one result set in the format expected by
+ * the {@link ReportGenerator}.
+ * <p>
+ * Throughput results are summed up per fork and iteration, as the workers
+ * generated load concurrently. For all other modes the iteration results of
+ * all workers are pooled, i.e., the forks of each worker become forks of the
+ * merged result.
+ */
+@Slf4j
+public class JmhResultMerger {
+    private static final String   RESULT_FILE_PATTERN = "(average_response|throughput_\\d+threads"
+            + "|combining_algorithm|payload_size|churn_\\d+threads)\\.json";
+    private static final String   PRIMARY_METRIC      = "primaryMetric";
+    private static final String   SECONDARY_METRICS   = "secondaryMetrics";
+    private static final String   RAW_DATA            = "rawData";
+    private static final String[] PERCENTILES         = { "0.0", "50.0", "90.0", "95.0", "99.0", "99.9", "99.99",
+            "99.999", "99.9999", "100.0" };
+
+    private JmhResultMerger() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Merges all result files found in the folder of the first worker with the
+     * corresponding files of the other workers. The relative path of each result
+     * file is kept in the target folder.
+     */
+    public static void mergeWorkerResults(List<Path> workerFolders, Path targetFolder) throws IOException {
+        List<Path> resultFiles;
+        try (var files = Files.walk(workerFolders.get(0))) {
+            resultFiles = files.filter(file -> file.getFileName().toString().matches(RESULT_FILE_PATTERN))
+                    .map(file -> workerFolders.get(0).relativize(file)).toList();
+        }
+        for (var resultFile : resultFiles) {
+            List<JsonArray> workerResults = new ArrayList<>(workerFolders.size());
+            for (var workerFolder : workerFolders) {
+                var workerResultFile = workerFolder.resolve(resultFile);
+                if (!Files.exists(workerResultFile)) {
+                    throw new BenchmarkException("Missing worker result " + workerResultFile);
+                }
+                try (var reader = new FileReader(workerResultFile.toFile(), StandardCharsets.UTF_8)) {
+                    workerResults.add(JsonParser.parseReader(reader).getAsJsonArray());
+                }
+            }
+            var target = targetFolder.resolve(resultFile);
+            Files.createDirectories(target.getParent());
+            log.info("merging {} worker results into {}", workerResults.size(), target);
+            try (var writer = new BufferedWriter(new FileWriter(target.toFile(), StandardCharsets.UTF_8))) {
+                writer.write(mergeRuns(workerResults).toString());
+            }
+        }
+    }
+
+    static JsonArray mergeRuns(List<JsonArray> workerResults) {
+        Map<String, List<JsonObject>> runsByBenchmark = new LinkedHashMap<>();
+        for (var workerResult : workerResults) {
+            for (JsonElement e : workerResult) {
+                var run = e.getAsJsonObject();
+                var key = run.get("benchmark").getAsString() + run.get("params");
+                runsByBenchmark.computeIfAbsent(key, xY -> new ArrayList<>()).add(run);
+            }
+        }
+        var merged = new JsonArray();
+        for (var runs : runsByBenchmark.values()) {
+            merged.add(mergeRun(runs));
+        }
+        return merged;
+    }
+
+    private static JsonObject mergeRun(List<JsonObject> runs) {
+        var merged  = runs.get(0).deepCopy();
+        var rawData = "thrpt".equals(merged.get("mode").getAsString()) ? sumRawData(runs) : poolRawData(runs);
+
+        var statistics = new DescriptiveStatistics();
+        for (JsonElement fork : rawData) {
+            for (JsonElement iteration : fork.getAsJsonArray()) {
+                statistics.addValue(iteration.getAsDouble());
+            }
+        }
+        var primaryMetric = merged.get(PRIMARY_METRIC).getAsJsonObject();
+        primaryMetric.addProperty("score", statistics.getMean());
+        var error      = scoreError(statistics);
+        var confidence = new JsonArray();
+        confidence.add(toJson(statistics.getMean() - error));
+        confidence.add(toJson(statistics.getMean() + error));
+        primaryMetric.add("scoreError", toJson(error));
+        primaryMetric.add("scoreConfidence", confidence);
+        var percentiles = new JsonObject();
+        for (var percentile : PERCENTILES) {
+            var p = Double.parseDouble(percentile);
+            percentiles.addProperty(percentile, p == 0.0D ? statistics.getMin() : statistics.getPercentile(p));
+        }
+        primaryMetric.add("scorePercentiles", percentiles);
+        primaryMetric.add(RAW_DATA, rawData);
+        mergeServerCpuEfficiency(runs, merged);
+        merged.addProperty("workers", runs.size());
+        return merged;
+    }
+
+    /**
+     * Each worker relates the CPU time of the shared PDP container to its own
+     * decisions. The decisions per CPU-second of all workers therefore add up,
+     * and the CPU-ms per decision is the reciprocal of the sum of reciprocals.
+     * The client values of the first worker are kept.
+     */
+    private static void mergeServerCpuEfficiency(List<JsonObject> runs, JsonObject merged) {
+        var secondaryMetrics = merged.getAsJsonObject(SECONDARY_METRICS);
+        if (secondaryMetrics == null
+                || !secondaryMetrics.has(CpuEfficiencyProfiler.SERVER_DECISIONS_PER_CPU_SECOND)) {
+            return;
+        }
+        double decisionsPerCpuSecond = 0.0D;
+        for (var run : runs) {
+            decisionsPerCpuSecond += getSecondaryScore(run, CpuEfficiencyProfiler.SERVER_DECISIONS_PER_CPU_SECOND);
+        }
+        secondaryMetrics.getAsJsonObject(CpuEfficiencyProfiler.SERVER_DECISIONS_PER_CPU_SECOND)
+                .add("score", toJson(decisionsPerCpuSecond));
+        secondaryMetrics.getAsJsonObject(CpuEfficiencyProfiler.SERVER_CPU_MS_PER_DECISION).add("score",
+                toJson(1000.0D / decisionsPerCpuSecond));
+    }
+
+    private static double getSecondaryScore(JsonObject run, String label) {
+        var secondaryMetrics = run.getAsJsonObject(SECONDARY_METRICS);
+        if (secondaryMetrics == null || !secondaryMetrics.has(label)) {
+            return Double.NaN;
+        }
+        return secondaryMetrics.getAsJsonObject(label).get("score").getAsDouble();
+    }
+
+    /**
+     * Summing up requires all workers to have measured the same forks and
+     * iterations, anything else indicates that the workers did not run in
+     * parallel.
+     */
+    private static JsonArray sumRawData(List<JsonObject> runs) {
+        var rawData = getRawData(runs.get(0)).deepCopy();
+        for (var run : runs.subList(1, runs.size())) {
+            var workerRawData = getRawData(run);
+            if (workerRawData.size() != rawData.size()) {
+                throw new BenchmarkException(shapeMismatch(run, "forks", rawData.size(), workerRawData.size()));
+            }
+            for (int fork = 0; fork < rawData.size(); fork++) {
+                var iterations       = rawData.get(fork).getAsJsonArray();
+                var workerIterations = workerRawData.get(fork).getAsJsonArray();
+                if (workerIterations.size() != iterations.size()) {
+                    throw new BenchmarkException(
+                            shapeMismatch(run, "iterations", iterations.size(), workerIterations.size()));
+                }
+                for (int i = 0; i < iterations.size(); i++) {
+                    iterations.set(i, new JsonPrimitive(
+                            iterations.get(i).getAsDouble() + workerIterations.get(i).getAsDouble()));
+                }
+            }
+        }
+        return rawData;
+    }
+
+    private static String shapeMismatch(JsonObject run, String what, int expected, int actual) {
+        return "Unable to sum up throughput of " + run.get("benchmark").getAsString() + run.get("params") + ": "
+                + actual + " " + what + " measured by a worker, " + expected + " by the first worker";
+    }
+
+    private static JsonArray poolRawData(List<JsonObject> runs) {
+        var rawData = new JsonArray();
+        for (var run : runs) {
+            rawData.addAll(getRawData(run));
+        }
+        return rawData;
+    }
+
+    /**
+     * JMH writes values which are not a number as the string "NaN".
+     */
+    private static JsonPrimitive toJson(double value) {
+        return Double.isNaN(value) ? new JsonPrimitive("NaN") : new JsonPrimitive(value);
+    }
+
+    private static JsonArray getRawData(JsonObject run) {
+        return run.get(PRIMARY_METRIC).getAsJsonObject().get(RAW_DATA).getAsJsonArray();
+    }
+
+    /**
+     * Half-width of the 99.9% confidence interval, as calculated by JMH.
+     */
+    private static double scoreError(DescriptiveStatistics statistics) {
+        if (statistics.getN() <= 2) {
+            return Double.NaN;
+        }
+        var tDistribution = new TDistribution(statistics.getN() - 1D);
+        return tDistribution.inverseCumulativeProbability(1 - 0.001 / 2) * statistics.getStandardDeviation()
+                / Math.sqrt(statistics.getN());
+    }
+}
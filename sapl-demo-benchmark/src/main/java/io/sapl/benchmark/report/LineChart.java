@@ -37,8 +37,12 @@ public class LineChart {
     private final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
     public LineChart(String title, String valueAxisLabel) {
-        chart = ChartFactory.createLineChart(title, "iteration", valueAxisLabel, dataset, PlotOrientation.VERTICAL,
-                true, true, false);
+        this(title, "iteration", valueAxisLabel);
+    }
+
+    public LineChart(String title, String categoryAxisLabel, String valueAxisLabel) {
+        chart = ChartFactory.createLineChart(title, categoryAxisLabel, valueAxisLabel, dataset,
+                PlotOrientation.VERTICAL, true, true, false);
     }
 
     public void addValue(Double yValue, String category, String xValue) {
@@ -30,10 +30,12 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.HashMap;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
 import org.jfree.chart.labels.StandardCategoryItemLabelGenerator;
@@ -45,6 +47,8 @@
 import com.nimbusds.jose.shaded.gson.JsonObject;
 import com.nimbusds.jose.shaded.gson.JsonParser;
 
+import io.sapl.benchmark.jmh.CombiningAlgorithmBenchmark;
+import io.sapl.benchmark.jmh.CpuEfficiencyProfiler;
 import io.sapl.benchmark.util.BenchmarkException;
 import lombok.extern.slf4j.Slf4j;
 
@@ -56,6 +60,10 @@ public class ReportGenerator {
     static String primaryMetricField    = "primaryMetric";
     static String scorePercentilesField = "scorePercentiles";
     static String chartField            = "chart";
+    static String profileField          = "profile";
+
+    public static final String COMBINING_ALGORITHM_RESULT_FILE = "combining_algorithm.json";
+    public static final String PAYLOAD_SIZE_RESULT_FILE        = "payload_size.json";
 
     private ReportGenerator() {
         throw new IllegalStateException("Utility class");
@@ -263,6 +271,25 @@ private static Object getVarianceFromRawData(JsonArray rawData) {
         return standardDeviation;
     }
 
+    private static double getSecondaryScore(JsonObject runResult, String label) {
+        var secondaryMetrics = runResult.getAsJsonObject("secondaryMetrics");
+        if (secondaryMetrics == null || !secondaryMetrics.has(label)) {
+            return Double.NaN;
+        }
+        return secondaryMetrics.getAsJsonObject(label).get(scoreField).getAsDouble();
+    }
+
+    private static Map<String, Object> getCpuEfficiency(JsonObject runResult) {
+        return Map.of("clientDecisionsPerCpuSecond",
+                getSecondaryScore(runResult, CpuEfficiencyProfiler.CLIENT_DECISIONS_PER_CPU_SECOND),
+                "clientCpuMsPerDecision",
+                getSecondaryScore(runResult, CpuEfficiencyProfiler.CLIENT_CPU_MS_PER_DECISION),
+                "serverDecisionsPerCpuSecond",
+                getSecondaryScore(runResult, CpuEfficiencyProfiler.SERVER_DECISIONS_PER_CPU_SECOND),
+                "serverCpuMsPerDecision",
+                getSecondaryScore(runResult, CpuEfficiencyProfiler.SERVER_CPU_MS_PER_DECISION));
+    }
+
     private static Map<String, Map<String, Object>> getThroughputContext(String bechmarkFolder) throws IOException {
         Map<String, List<Map<String, Object>>> baseData = new HashMap<>(1);
 
@@ -292,6 +319,7 @@ private static Map<String, Map<String, Object>> getThroughputContext(String bech
                         put(scoreField, runResult.get(primaryMetricField).getAsJsonObject().get(scoreField).getAsDouble());
                         put("stddev", getVarianceFromRawData(runResult.get(primaryMetricField).getAsJsonObject().get("rawData").getAsJsonArray()));
                         put(chartField, chartFilePath);
+                        putAll(getCpuEfficiency(runResult));
                     }
                 };
 
@@ -311,6 +339,133 @@ private static Map<String, Map<String, Object>> getThroughputContext(String bech
         return resultMap;
     }
 
+    private static List<Map<String, Object>> getCombiningAlgorithmContext(String benchmarkFolder)
+            throws IOException {
+        var resultFile = new File(benchmarkFolder, COMBINING_ALGORITHM_RESULT_FILE);
+        if (!resultFile.exists()) {
+            return List.of();
+        }
+        Map<Integer, List<Map<String, Object>>> rowsByPolicies = new TreeMap<>();
+        for (JsonElement e : readJsonArray(resultFile)) {
+            JsonObject runResult  = e.getAsJsonObject();
+            JsonObject params     = runResult.get("params").getAsJsonObject();
+            int        policies   = params.get("policies").getAsInt();
+            double     share      = params.get("applicableShare").getAsDouble();
+            int        applicable = CombiningAlgorithmBenchmark.applicablePolicies(policies, share);
+            double     score      = runResult.get(primaryMetricField).getAsJsonObject().get(scoreField).getAsDouble();
+            var        row        = new HashMap<String, Object>();
+            row.put("algorithm", params.get("algorithm").getAsString());
+            row.put("policies", policies);
+            row.put("applicableShare", share);
+            row.put("applicable", applicable);
+            row.put(scoreField, score);
+            row.put("perApplicable", score / applicable);
+            rowsByPolicies.computeIfAbsent(policies, xY -> new ArrayList<>()).add(row);
+        }
+
+        List<Map<String, Object>> sections = new ArrayList<>();
+        for (var entry : rowsByPolicies.entrySet()) {
+            var rows = entry.getValue();
+            rows.sort(Comparator.comparing((Map<String, Object> row) -> (Integer) row.get("applicable"))
+                    .thenComparing(row -> (String) row.get("algorithm")));
+            var title = "Combining algorithm scaling - " + entry.getKey() + " policies";
+            var chart = new LineChart(title, "applicable policies", "us/op");
+            for (var row : rows) {
+                chart.addValue((Double) row.get(scoreField), (String) row.get("algorithm"),
+                        String.valueOf(row.get("applicable")));
+            }
+            var chartFilePath = "img/" + title + ".png";
+            chart.saveToPNGFile(new File(benchmarkFolder + File.separator + chartFilePath), 960, 400);
+            sections.add(Map.of("policies", entry.getKey(), chartField, chartFilePath, "tableData", rows));
+        }
+        return sections;
+    }
+
+    /**
+     * @return the allocated bytes per operation reported by the GC profiler, or
+     *         NaN if the result contains no allocation metric.
+     */
+    private static double getAllocatedBytesPerOp(JsonObject runResult) {
+        var secondaryMetrics = runResult.getAsJsonObject("secondaryMetrics");
+        if (secondaryMetrics != null) {
+            for (var metric : secondaryMetrics.entrySet()) {
+                if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+                    return metric.getValue().getAsJsonObject().get(scoreField).getAsDouble();
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static Map<String, Object> getPayloadSizeContext(String benchmarkFolder) throws IOException {
+        var resultFile = new File(benchmarkFolder, PAYLOAD_SIZE_RESULT_FILE);
+        if (!resultFile.exists()) {
+            return Map.of();
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (JsonElement e : readJsonArray(resultFile)) {
+            JsonObject runResult    = e.getAsJsonObject();
+            JsonObject params       = runResult.get("params").getAsJsonObject();
+            int        payloadBytes = params.get("payloadBytes").getAsInt();
+            double     score        = runResult.get(primaryMetricField).getAsJsonObject().get(scoreField)
+                    .getAsDouble();
+            String     method       = runResult.get(benchmarkField).getAsString().replaceAll(".*\\.", "")
+                    .replace("DecideOnce", "");
+            var        row          = new HashMap<String, Object>();
+            row.put(pdpNameField, params.get("pdp").getAsString() + " " + method);
+            row.put("payloadBytes", payloadBytes);
+            row.put(scoreField, score);
+            row.put("msPerKb", score / (payloadBytes / 1024.0));
+            row.put("bytesPerOp", getAllocatedBytesPerOp(runResult));
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparing((Map<String, Object> row) -> (String) row.get(pdpNameField))
+                .thenComparing(row -> (Integer) row.get("payloadBytes")));
+
+        var title = "Payload size sweep";
+        var chart = new LineChart(title, "resource size [bytes]", "ms/op");
+        for (var row : rows) {
+            chart.addValue((Double) row.get(scoreField), (String) row.get(pdpNameField),
+                    String.valueOf(row.get("payloadBytes")));
+        }
+        var chartFilePath = "img/" + title + ".png";
+        chart.saveToPNGFile(new File(benchmarkFolder + File.separator + chartFilePath), 960, 400);
+        return Map.of(chartField, chartFilePath, "tableData", rows);
+    }
+
+    private static Map<String, Object> getChurnContext(String benchmarkFolder) throws IOException {
+        FilenameFilter filenameFilter = (d, s) -> s.matches("churn_\\d+threads.json");
+        var            resultFiles    = new File(benchmarkFolder).listFiles(filenameFilter);
+        if (resultFiles == null || resultFiles.length == 0) {
+            return Map.of();
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (var resultFile : resultFiles) {
+            for (JsonElement e : readJsonArray(resultFile)) {
+                JsonObject runResult  = e.getAsJsonObject();
+                boolean    attributes = runResult.get("params").getAsJsonObject().get("attributes").getAsBoolean();
+                var        row        = new HashMap<String, Object>();
+                row.put(pdpNameField, attributes ? "with PIP attribute" : "without PIP attribute");
+                row.put("threads", runResult.get("threads").getAsInt());
+                row.put(scoreField,
+                        runResult.get(primaryMetricField).getAsJsonObject().get(scoreField).getAsDouble());
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparing((Map<String, Object> row) -> (String) row.get(pdpNameField))
+                .thenComparing(row -> (Integer) row.get("threads")));
+
+        var title = "Subscribe-cancel churn";
+        var chart = new LineChart(title, "threads", "subscriptions/s");
+        for (var row : rows) {
+            chart.addValue((Double) row.get(scoreField), (String) row.get(pdpNameField),
+                    String.valueOf(row.get("threads")));
+        }
+        var chartFilePath = "img/" + title + ".png";
+        chart.saveToPNGFile(new File(benchmarkFolder + File.separator + chartFilePath), 960, 400);
+        return Map.of(chartField, chartFilePath, "tableData", rows);
+    }
+
     public static void generateHTMLReport(String benchmarkFolder) throws IOException {
         Files.createDirectories(Paths.get(benchmarkFolder + "/img"));
         // build context
@@ -319,27 +474,140 @@ public static void generateHTMLReport(String benchmarkFolder) throws IOException
         context.put("responseTimeData", getResponseTimeContext(benchmarkFolder));
         context.put("throughputData", getThroughputContext(benchmarkFolder));
         context.put("throughputJsonFiles", getThroughputJsonFiles(benchmarkFolder));
+        context.put("combiningAlgorithmData", getCombiningAlgorithmContext(benchmarkFolder));
+        context.put("payloadSizeData", getPayloadSizeContext(benchmarkFolder));
+        context.put("churnData", getChurnContext(benchmarkFolder));
 
         // build context
         var jnj         = new Jinjava();
-        var inputStream = ReportGenerator.class.getClassLoader().getResourceAsStream("Report.html");
-        if (inputStream != null) {
-            String template = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-
-            String fileContent    = jnj.render(template, context);
-            var    reportFilePath = benchmarkFolder + "/Report.html";
-            log.info("generating report: {}", reportFilePath);
-            BufferedWriter writer = new BufferedWriter(new FileWriter(reportFilePath, StandardCharsets.UTF_8));
+        try (var inputStream = ReportGenerator.class.getClassLoader().getResourceAsStream("Report.html")) {
+            if (inputStream != null) {
+                String template = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+
+                String fileContent    = jnj.render(template, context);
+                var    reportFilePath = benchmarkFolder + "/Report.html";
+                log.info("generating report: {}", reportFilePath);
+                try (var writer = new BufferedWriter(new FileWriter(reportFilePath, StandardCharsets.UTF_8))) {
+                    writer.write(fileContent);
+                }
+            }
+        }
+
+        copyStaticFiles(benchmarkFolder);
+    }
+
+    private static void renderTemplate(String templateName, Map<String, Object> context, String reportFilePath)
+            throws IOException {
+        String template;
+        try (var inputStream = ReportGenerator.class.getClassLoader().getResourceAsStream(templateName)) {
+            if (inputStream == null) {
+                throw new BenchmarkException("Report template " + templateName + " not found");
+            }
+            template = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String fileContent = new Jinjava().render(template, context);
+        log.info("generating report: {}", reportFilePath);
+        try (var writer = new BufferedWriter(new FileWriter(reportFilePath, StandardCharsets.UTF_8))) {
             writer.write(fileContent);
-            writer.close();
         }
+    }
 
-        // copy static files
+    private static void copyStaticFiles(String benchmarkFolder) throws IOException {
         for (String file : new String[] { "custom.css", "favicon.png" }) {
-            inputStream = ReportGenerator.class.getClassLoader().getResourceAsStream(file);
-            if (inputStream != null) {
-                FileUtils.copyInputStreamToFile(inputStream, new File(benchmarkFolder + File.separator + file));
+            try (var inputStream = ReportGenerator.class.getClassLoader().getResourceAsStream(file)) {
+                if (inputStream != null) {
+                    FileUtils.copyInputStreamToFile(inputStream, new File(benchmarkFolder + File.separator + file));
+                }
             }
         }
     }
+
+    private static JsonArray readJsonArray(File file) throws IOException {
+        try (var reader = new FileReader(file, StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonArray();
+        }
+    }
+
+    private static double getPercentile(JsonObject primaryMetric, String percentile) {
+        return primaryMetric.get(scorePercentilesField).getAsJsonObject().get(percentile).getAsDouble();
+    }
+
+    /**
+     * Generates a report in the benchmark folder comparing the latency tails and
+     * the throughput of the suite executed with different JVM profiles. The
+     * results of each profile are expected in a sub folder named after the
+     * profile.
+     */
+    public static void generateJvmProfileComparisonReport(String benchmarkFolder, List<String> profiles)
+            throws IOException {
+        Files.createDirectories(Paths.get(benchmarkFolder + "/img"));
+        List<Map<String, Object>>              responseTimeRows = new ArrayList<>();
+        Map<String, List<Map<String, Object>>> throughputRows   = new LinkedHashMap<>();
+        var responseTimeChart = new BarChart("99% response time by JVM profile", "ms/op");
+        for (var profile : profiles) {
+            var profileFolder       = benchmarkFolder + File.separator + profile;
+            var averageResponseFile = new File(profileFolder, "average_response.json");
+            if (averageResponseFile.exists()) {
+                for (JsonElement e : readJsonArray(averageResponseFile)) {
+                    JsonObject runResult     = e.getAsJsonObject();
+                    String     benchmarkName = getBenchmarkNameFromFqn(runResult.get(benchmarkField).getAsString());
+                    JsonObject primaryMetric = runResult.get(primaryMetricField).getAsJsonObject();
+                    var        row           = new HashMap<String, Object>();
+                    row.put(benchmarkField, benchmarkName);
+                    row.put(profileField, profile);
+                    row.put(scoreField, primaryMetric.get(scoreField).getAsDouble());
+                    row.put("pct_50", getPercentile(primaryMetric, "50.0"));
+                    row.put("pct_99", getPercentile(primaryMetric, "99.0"));
+                    row.put("pct_100", getPercentile(primaryMetric, "100.0"));
+                    responseTimeRows.add(row);
+                    responseTimeChart.addBenchmarkResult(profile, benchmarkName,
+                            round(getPercentile(primaryMetric, "99.0")));
+                }
+            }
+            for (String filename : getThroughputJsonFiles(profileFolder)) {
+                String threads = getThreadCountFromFileName(filename) + "-threads";
+                for (JsonElement e : readJsonArray(new File(profileFolder, filename))) {
+                    JsonObject runResult     = e.getAsJsonObject();
+                    String     benchmarkName = getBenchmarkNameFromFqn(runResult.get(benchmarkField).getAsString());
+                    var        row           = new HashMap<String, Object>();
+                    row.put(benchmarkField, benchmarkName);
+                    row.put(profileField, profile);
+                    row.put("threads", threads);
+                    row.put(scoreField,
+                            runResult.get(primaryMetricField).getAsJsonObject().get(scoreField).getAsDouble());
+                    throughputRows.computeIfAbsent(threads, xY -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+
+        Map<String, Object> context = Maps.newHashMap();
+        context.put("profiles", profiles);
+        context.put("responseTimeData", responseTimeRows);
+        if (!responseTimeRows.isEmpty()) {
+            var chartFilePath = "img/jvm profiles - response time.png";
+            responseTimeChart.showLabels();
+            responseTimeChart.useLogAxis();
+            responseTimeChart.saveToPNGFile(new File(benchmarkFolder + File.separator + chartFilePath), 960, 400);
+            context.put("responseTimeChart", chartFilePath);
+        }
+        List<Map<String, Object>> throughputSections = new ArrayList<>();
+        for (var entry : throughputRows.entrySet()) {
+            var chart = new BarChart("Throughput by JVM profile (" + entry.getKey() + ")", "ops/s");
+            for (var row : entry.getValue()) {
+                chart.addBenchmarkResult((String) row.get(profileField), (String) row.get(benchmarkField),
+                        round((Double) row.get(scoreField)));
+            }
+            chart.showLabels(new StandardCategoryItemLabelGenerator("{2}", new DecimalFormat("#"),
+                    new DecimalFormat("#")));
+            chart.useLogAxis();
+            var chartFilePath = "img/jvm profiles - " + entry.getKey() + " throughput.png";
+            chart.saveToPNGFile(new File(benchmarkFolder + File.separator + chartFilePath), 960, 400);
+            throughputSections.add(Map.of("threads", entry.getKey(), chartField, chartFilePath, "tableData",
+                    entry.getValue()));
+        }
+        context.put("throughputData", throughputSections);
+
+        renderTemplate("JvmProfileComparison.html", context, benchmarkFolder + "/Report.html");
+        copyStaticFiles(benchmarkFolder);
+    }
 }
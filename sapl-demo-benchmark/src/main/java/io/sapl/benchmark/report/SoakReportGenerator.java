@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.report;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.commons.io.FileUtils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+import com.hubspot.jinjava.Jinjava;
+
+import io.sapl.benchmark.soak.SoakSample;
+import io.sapl.benchmark.soak.SoakTest;
+import io.sapl.benchmark.util.BenchmarkException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates the soak report from the samples of a {@link SoakTest}. Metrics
+ * which grow monotonically over the test, or throughput which shrinks
+ * monotonically, are flagged as suspicious.
+ */
+@Slf4j
+public class SoakReportGenerator {
+    static final int    TREND_SEGMENTS  = 4;
+    static final double TREND_THRESHOLD = 0.05D;
+    static final String GROWING         = "growing";
+    static final String DEGRADING       = "degrading";
+    static final String STABLE          = "stable";
+    static final String INSUFFICIENT    = "insufficient samples";
+    static final String NOT_AVAILABLE   = "not available";
+
+    private SoakReportGenerator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static void generateSoakReport(String benchmarkFolder, int warmupSamples) throws IOException {
+        Files.createDirectories(Paths.get(benchmarkFolder + "/img"));
+        List<SoakSample> samples = new ObjectMapper().readValue(new File(benchmarkFolder, SoakTest.SAMPLES_FILE),
+                new TypeReference<>() {
+                });
+
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        metrics.add(metric(benchmarkFolder, samples, warmupSamples, "throughput", "ops/s", SoakSample::getThroughput,
+                true));
+        metrics.add(metric(benchmarkFolder, samples, warmupSamples, "p99 response time", "ms/op",
+                SoakSample::getP99Millis, false));
+        metrics.add(metric(benchmarkFolder, samples, warmupSamples, "heap after GC", "MB",
+                SoakSample::getHeapAfterGcMegabytes, false));
+        metrics.add(metric(benchmarkFolder, samples, warmupSamples, "threads", "threads", SoakSample::getThreads,
+                false));
+        metrics.add(metric(benchmarkFolder, samples, warmupSamples, "open file descriptors", "file descriptors",
+                SoakSample::getOpenFileDescriptors, false));
+
+        Map<String, Object> context = Maps.newHashMap();
+        context.put("metrics", metrics);
+        context.put("samples", samples);
+        context.put("warmupSamples", warmupSamples);
+        context.put("suspicious", metrics.stream()
+                .anyMatch(metric -> GROWING.equals(metric.get("verdict")) || DEGRADING.equals(metric.get("verdict"))));
+
+        String template;
+        try (var inputStream = ReportGenerator.class.getClassLoader().getResourceAsStream("SoakReport.html")) {
+            if (inputStream == null) {
+                throw new BenchmarkException("Report template SoakReport.html not found");
+            }
+            template = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        var reportFilePath = benchmarkFolder + "/SoakReport.html";
+        log.info("generating report: {}", reportFilePath);
+        try (var writer = new BufferedWriter(new FileWriter(reportFilePath, StandardCharsets.UTF_8))) {
+            writer.write(new Jinjava().render(template, context));
+        }
+        for (String file : new String[] { "custom.css", "favicon.png" }) {
+            try (var staticFile = ReportGenerator.class.getClassLoader().getResourceAsStream(file)) {
+                if (staticFile != null) {
+                    FileUtils.copyInputStreamToFile(staticFile, new File(benchmarkFolder + File.separator + file));
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> metric(String benchmarkFolder, List<SoakSample> samples, int warmupSamples,
+            String name, String unit, ToDoubleFunction<SoakSample> getter, boolean higherIsBetter)
+            throws IOException {
+        var                 values = samples.stream().mapToDouble(getter).toArray();
+        Map<String, Object> metric = Maps.newHashMap();
+        metric.put("name", name);
+        metric.put("unit", unit);
+        if (values.length == 0 || Arrays.stream(values).allMatch(value -> value < 0)) {
+            // e.g. open file descriptors on non-unix systems
+            metric.put("verdict", NOT_AVAILABLE);
+            return metric;
+        }
+        metric.put("first", values[0]);
+        metric.put("last", values[values.length - 1]);
+        metric.put("verdict", verdict(values, warmupSamples, higherIsBetter));
+
+        var chart = new LineChart("Soak test - " + name, "elapsed minutes", unit);
+        for (var sample : samples) {
+            chart.addValue(getter.applyAsDouble(sample), name, String.valueOf(Math.round(sample.getElapsedMinutes())));
+        }
+        var chartFilePath = "img/soak " + name + ".png";
+        chart.saveToPNGFile(new File(benchmarkFolder + File.separator + chartFilePath), 960, 400);
+        metric.put("chart", chartFilePath);
+        return metric;
+    }
+
+    /**
+     * Splits the samples after the warmup into segments and compares the medians
+     * of the segments. A metric grows monotonically if the median increases from
+     * segment to segment and the last median exceeds the first one by more than
+     * the threshold. Metrics where higher values are better (throughput) are
+     * flagged as degrading if they shrink monotonically.
+     */
+    public static String verdict(double[] values, int warmupSamples, boolean higherIsBetter) {
+        var series = Arrays.copyOfRange(values, Math.min(warmupSamples, values.length), values.length);
+        if (series.length < TREND_SEGMENTS * 2) {
+            return INSUFFICIENT;
+        }
+        if (higherIsBetter) {
+            series = Arrays.stream(series).map(value -> -value).toArray();
+        }
+        var medians     = new double[TREND_SEGMENTS];
+        var segmentSize = series.length / TREND_SEGMENTS;
+        for (int i = 0; i < TREND_SEGMENTS; i++) {
+            var segment = Arrays.copyOfRange(series, i * segmentSize,
+                    i == TREND_SEGMENTS - 1 ? series.length : (i + 1) * segmentSize);
+            Arrays.sort(segment);
+            medians[i] = segment[segment.length / 2];
+        }
+        for (int i = 1; i < TREND_SEGMENTS; i++) {
+            if (!(medians[i] > medians[i - 1])) {
+                return STABLE;
+            }
+        }
+        if (medians[TREND_SEGMENTS - 1] - medians[0] <= Math.abs(medians[0]) * TREND_THRESHOLD) {
+            return STABLE;
+        }
+        return higherIsBetter ? DEGRADING : GROWING;
+    }
+}
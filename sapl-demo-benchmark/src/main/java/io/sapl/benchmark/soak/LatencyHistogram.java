@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.soak;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with logarithmic buckets. Each bucket covers a
+ * range of 5%, i.e., reported percentiles have a relative error of at most 5%.
+ */
+public class LatencyHistogram {
+    private static final double LOG_BASE = Math.log(1.05D);
+    private static final int    BUCKETS  = 600;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void recordNanos(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+    }
+
+    private static int bucketOf(long nanos) {
+        return Math.min(BUCKETS - 1, (int) (Math.log(Math.max(nanos, 1L)) / LOG_BASE));
+    }
+
+    private static double upperBoundNanos(int bucket) {
+        return Math.exp((bucket + 1) * LOG_BASE);
+    }
+
+    /**
+     * Resets the histogram and returns the given percentile of the values
+     * recorded since the last reset.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return the percentile in milliseconds, or NaN if no value was recorded
+     */
+    public double percentileMillisAndReset(double percentile) {
+        var  snapshot = new long[BUCKETS];
+        long total    = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i]  = counts.getAndSet(i, 0L);
+            total       += snapshot[i];
+        }
+        if (total == 0) {
+            return Double.NaN;
+        }
+        var  rank       = (long) Math.ceil(total * percentile / 100D);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return upperBoundNanos(i) / 1_000_000D;
+            }
+        }
+        return upperBoundNanos(BUCKETS - 1) / 1_000_000D;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.soak;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Metrics sampled at the end of one soak test interval.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SoakSample {
+    private double elapsedMinutes;
+    private double throughput;
+    private double p99Millis;
+    private double heapAfterGcMegabytes;
+    private int    threads;
+    private long   openFileDescriptors;
+    private long   liveStreams;
+    private long   errors;
+}
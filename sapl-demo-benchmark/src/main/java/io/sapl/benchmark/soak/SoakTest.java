@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.soak;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.benchmark.BenchmarkConfiguration;
+import io.sapl.benchmark.BenchmarkExecutionContext;
+import io.sapl.benchmark.jmh.Helper;
+import io.sapl.benchmark.util.BenchmarkException;
+import io.sapl.benchmark.util.EchoPIP;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+/**
+ * Runs a mixed workload against a PDP for hours to detect slow resource leaks
+ * and performance degradation. The workload consists of decideOnce calls,
+ * subscribe/first decision/cancel churn on decide() streams, and long-lived
+ * decide() streams of which a share is replaced in every sample interval.
+ * <p>
+ * Throughput, p99 latency, heap after GC, thread count and open file
+ * descriptors of this process are sampled at the end of each interval and
+ * written to soak_samples.json. For the embedded PDP these metrics cover the
+ * PDP itself, for remote PDPs only the client side. Remote PDPs are connected
+ * with the authentication method selected by soak.auth. The run is aborted
+ * when the share of failed operations in a sample interval exceeds
+ * soak.max_error_percent, as the samples of a failing PDP are meaningless.
+ * Operations not answered within 10 seconds count as failed.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SoakTest {
+    public static final String SAMPLES_FILE = "soak_samples.json";
+
+    private static final Duration OPERATION_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final BenchmarkConfiguration    config;
+    private final BenchmarkExecutionContext context;
+    private final String                    benchmarkFolder;
+
+    private final LatencyHistogram                  latencies   = new LatencyHistogram();
+    private final LongAdder                         operations  = new LongAdder();
+    private final LongAdder                         errors      = new LongAdder();
+    private final ConcurrentLinkedQueue<Disposable> liveStreams = new ConcurrentLinkedQueue<>();
+
+    public void run() {
+        var pdp          = createPdp();
+        var subscription = context.getAuthorizationSubscription();
+        var running      = new AtomicBoolean(true);
+        var executor     = Executors.newFixedThreadPool(config.getSoakThreads());
+        try {
+            log.info("starting soak test against {} pdp for {} minutes", config.getSoakPdp(),
+                    config.getSoakDurationMinutes());
+            for (int i = 0; i < config.getSoakLongLivedStreams(); i++) {
+                openStream(pdp, subscription);
+            }
+            for (int i = 0; i < config.getSoakThreads(); i++) {
+                executor.submit(() -> {
+                    while (running.get()) {
+                        executeOperation(pdp, subscription);
+                    }
+                });
+            }
+            sampleUntilEnd(pdp, subscription);
+        } finally {
+            running.set(false);
+            shutdown(executor);
+            liveStreams.forEach(Disposable::dispose);
+            if (pdp instanceof EmbeddedPolicyDecisionPoint embeddedPdp) {
+                embeddedPdp.destroy();
+            }
+        }
+    }
+
+    private void sampleUntilEnd(PolicyDecisionPoint pdp, AuthorizationSubscription subscription) {
+        var  samples        = new ArrayList<SoakSample>();
+        var  intervalMillis = TimeUnit.SECONDS.toMillis(config.getSoakSampleIntervalSeconds());
+        var  start          = System.nanoTime();
+        var  end            = start + TimeUnit.MINUTES.toNanos(config.getSoakDurationMinutes());
+        long intervalStart  = start;
+        long errorsBefore   = 0L;
+        operations.reset();
+        while (System.nanoTime() < end) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("soak test interrupted, stopping early");
+                return;
+            }
+            var now                = System.nanoTime();
+            var intervalOperations = operations.sumThenReset();
+            var sample             = takeSample(now - start, now - intervalStart, intervalOperations);
+            intervalStart = now;
+            samples.add(sample);
+            log.info("soak sample: {}", sample);
+            // write after every interval, so results survive an aborted run
+            writeSamples(samples);
+            failOnErrorRate(intervalOperations, sample.getErrors() - errorsBefore);
+            errorsBefore = sample.getErrors();
+            churnStreams(pdp, subscription);
+        }
+    }
+
+    private void failOnErrorRate(long intervalOperations, long intervalErrors) {
+        var attempts = intervalOperations + intervalErrors;
+        if (attempts > 0 && intervalErrors * 100D / attempts > config.getSoakMaxErrorPercent()) {
+            throw new BenchmarkException(String.format(
+                    "Soak test aborted: %d of %d operations failed in the last sample interval (max %d%%)",
+                    intervalErrors, attempts, config.getSoakMaxErrorPercent()));
+        }
+    }
+
+    private SoakSample takeSample(long elapsedNanos, long intervalNanos, long intervalOperations) {
+        var throughput = intervalOperations / (intervalNanos / 1_000_000_000D);
+        return new SoakSample(elapsedNanos / 60_000_000_000D, throughput, latencies.percentileMillisAndReset(99D),
+                heapAfterGcMegabytes(), ManagementFactory.getThreadMXBean().getThreadCount(),
+                openFileDescriptors(), liveStreams.size(), errors.sum());
+    }
+
+    private void executeOperation(PolicyDecisionPoint pdp, AuthorizationSubscription subscription) {
+        var start = System.nanoTime();
+        try {
+            if (ThreadLocalRandom.current().nextInt(100) < config.getSoakDecideOncePercent()) {
+                pdp.decideOnce(subscription).block(OPERATION_TIMEOUT);
+            } else {
+                // subscribe, wait for the first decision and cancel the stream
+                pdp.decide(subscription).blockFirst(OPERATION_TIMEOUT);
+            }
+            latencies.recordNanos(System.nanoTime() - start);
+            operations.increment();
+        } catch (RuntimeException e) {
+            // includes timeouts, so a hanging pdp does not park the thread
+            errors.increment();
+        }
+    }
+
+    private void openStream(PolicyDecisionPoint pdp, AuthorizationSubscription subscription) {
+        // a terminated stream is no longer live, so it is removed from the count
+        var stream = Disposables.swap();
+        liveStreams.add(stream);
+        stream.update(pdp.decide(subscription).subscribe(decision -> {
+        }, error -> {
+            errors.increment();
+            liveStreams.remove(stream);
+        }, () -> liveStreams.remove(stream)));
+    }
+
+    private void churnStreams(PolicyDecisionPoint pdp, AuthorizationSubscription subscription) {
+        var churn = config.getSoakLongLivedStreams() * config.getSoakStreamChurnPercent() / 100;
+        for (int i = 0; i < churn; i++) {
+            var stream = liveStreams.poll();
+            if (stream != null) {
+                stream.dispose();
+            }
+        }
+        // also replaces streams which terminated with an error
+        var missing = config.getSoakLongLivedStreams() - liveStreams.size();
+        for (int i = 0; i < missing; i++) {
+            openStream(pdp, subscription);
+        }
+    }
+
+    private static double heapAfterGcMegabytes() {
+        long used = 0;
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            var usageAfterGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usageAfterGc != null) {
+                used += usageAfterGc.getUsed();
+            }
+        }
+        return used / (1024D * 1024D);
+    }
+
+    private static long openFileDescriptors() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean unixBean) {
+            return unixBean.getOpenFileDescriptorCount();
+        }
+        return -1L;
+    }
+
+    private void writeSamples(List<SoakSample> samples) {
+        try {
+            MAPPER.writeValue(new File(benchmarkFolder, SAMPLES_FILE), samples);
+        } catch (IOException e) {
+            throw new BenchmarkException("Unable to write soak samples", e);
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private PolicyDecisionPoint createPdp() {
+        var pdp  = config.getSoakPdp();
+        var auth = config.getSoakAuth();
+        if (!"embedded".equals(pdp) && !Helper.isAuthEnabled(context, auth)) {
+            throw new BenchmarkException("soak.auth=" + auth + " requires the " + auth + " section to be enabled");
+        }
+        try {
+            return switch (pdp) {
+            case "http" -> Helper.httpPdp(context, auth);
+            case "rsocket" -> Helper.rsocketPdp(context, auth);
+            default -> PolicyDecisionPointFactory.resourcesPolicyDecisionPoint(List::of,
+                    () -> List.of(EchoPIP.class), List::of, List::of);
+            };
+        } catch (InitializationException | SSLException e) {
+            throw new BenchmarkException("Unable to create " + pdp + " pdp", e);
+        }
+    }
+}
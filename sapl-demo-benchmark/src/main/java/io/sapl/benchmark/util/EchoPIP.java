@@ -18,6 +18,7 @@
 package io.sapl.benchmark.util;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.sapl.api.interpreter.Val;
 import io.sapl.api.pip.Attribute;
@@ -25,8 +26,10 @@
 import io.sapl.api.validation.Text;
 import reactor.core.publisher.Flux;
 
-@PolicyInformationPoint(name = "echo", description = "PIP echoing the input value after 0,5 seconds")
+@PolicyInformationPoint(name = "echo", description = "PIP echoing the input value")
 public class EchoPIP {
+    private static final AtomicInteger ACTIVE_STREAMS = new AtomicInteger();
+
     private EchoPIP() {
         throw new IllegalStateException("Utility class");
     }
@@ -36,4 +39,22 @@ public static Flux<Val> delayed(@Text Val value) {
         return Flux.just(value).delayElements(Duration.ofMillis(500));
     }
 
+    /**
+     * Echoes the value immediately and then every second until the subscription
+     * is cancelled, like a PIP backed by a live connection.
+     */
+    @Attribute(name = "stream")
+    public static Flux<Val> stream(@Text Val value) {
+        return Flux.interval(Duration.ZERO, Duration.ofSeconds(1)).map(tick -> value)
+                .doOnSubscribe(subscription -> ACTIVE_STREAMS.incrementAndGet())
+                .doFinally(signal -> ACTIVE_STREAMS.decrementAndGet());
+    }
+
+    /**
+     * @return the number of subscribed echo.stream attributes in this JVM
+     */
+    public static int activeStreams() {
+        return ACTIVE_STREAMS.get();
+    }
+
 }
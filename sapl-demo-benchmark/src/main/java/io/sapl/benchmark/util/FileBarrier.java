@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.util;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A barrier for benchmark worker processes on the same host. Each party marks
+ * its arrival at a phase with a file in a shared folder and waits until all
+ * parties arrived. Phase names must be unique for a benchmark run.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class FileBarrier {
+    private static final long POLL_INTERVAL_MS = 20;
+
+    private final Path     folder;
+    private final int      parties;
+    private final String   partyId;
+    private final Duration timeout;
+
+    public void await(String phase) {
+        var prefix = phase + ".";
+        try {
+            Files.createDirectories(folder);
+            Files.createFile(folder.resolve(prefix + partyId));
+        } catch (FileAlreadyExistsException e) {
+            // arrival already marked
+        } catch (IOException e) {
+            throw new BenchmarkException("Unable to mark arrival at barrier phase " + phase, e);
+        }
+        log.info("{} waiting for {} parties at barrier phase {}", partyId, parties, phase);
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (countArrivals(prefix) < parties) {
+            if (System.nanoTime() > deadline) {
+                throw new BenchmarkException("Timeout while waiting for all parties at barrier phase " + phase);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BenchmarkException("Interrupted while waiting at barrier phase " + phase, e);
+            }
+        }
+    }
+
+    private long countArrivals(String prefix) {
+        try (var files = Files.list(folder)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).count();
+        } catch (IOException e) {
+            throw new BenchmarkException("Unable to read barrier folder " + folder, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.util;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+
+/**
+ * Generates subscriptions with a resource of a given JSON size. The resource
+ * is a patient record with a list of entries matching the payload policies in
+ * the bundled resources.
+ */
+public class Payloads {
+
+    private Payloads() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static AuthorizationSubscription subscriptionOfSize(String action, int resourceBytes) {
+        var subject = JsonNodeFactory.instance.objectNode().put("name", "Willi").put("role", "doctor");
+        return AuthorizationSubscription.of(subject, action, resourceOfSize(resourceBytes));
+    }
+
+    /**
+     * @return a patient record, which serialized as JSON is at least
+     *         resourceBytes large, but not more than one entry larger.
+     */
+    public static ObjectNode resourceOfSize(int resourceBytes) {
+        var resource = JsonNodeFactory.instance.objectNode().put("type", "patient_record");
+        var entries  = resource.putArray("entries");
+        int size     = resource.toString().length();
+        for (int i = 0; size < resourceBytes; i++) {
+            var entry = entries.addObject().put("id", i).put("ward", i % 2 == 0 ? "cardiology" : "oncology")
+                    .put("diagnosis", "diagnosis " + i).put("notes", "notes on the treatment of entry " + i);
+            size += entry.toString().length() + 1;
+        }
+        return resource;
+    }
+}
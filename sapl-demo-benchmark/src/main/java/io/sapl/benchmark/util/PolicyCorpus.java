@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.benchmark.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates policy folders for benchmarks which need a synthetic corpus of
+ * policies, e.g., to scale the number of policies, instead of the bundled
+ * resources.
+ */
+public class PolicyCorpus {
+
+    private PolicyCorpus() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static Path createFolder(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    public static void writePdpConfiguration(Path folder, String algorithm) throws IOException {
+        Files.writeString(folder.resolve("pdp.json"),
+                "{\n  \"algorithm\": \"" + algorithm + "\",\n  \"variables\": {}\n}", StandardCharsets.UTF_8);
+    }
+
+    public static void writeDocument(Path folder, String name, String document) throws IOException {
+        Files.writeString(folder.resolve(name + ".sapl"), document, StandardCharsets.UTF_8);
+    }
+
+    public static void deleteFolder(Path folder) throws IOException {
+        if (folder == null || !Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -23,6 +23,12 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Assertions;
@@ -32,14 +38,26 @@
 import org.mockito.Mockito;
 import org.testcontainers.containers.GenericContainer;
 
+import com.nimbusds.jose.shaded.gson.JsonParser;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
 import io.sapl.benchmark.BenchmarkConfiguration;
 import io.sapl.benchmark.BenchmarkExecutionContext;
+import io.sapl.benchmark.jmh.ChurnBenchmark;
+import io.sapl.benchmark.jmh.CpuEfficiencyProfiler;
 import io.sapl.benchmark.jmh.EmbeddedBenchmark;
 import io.sapl.benchmark.jmh.Helper;
 import io.sapl.benchmark.jmh.HttpBenchmark;
+import io.sapl.benchmark.jmh.PayloadSizeBenchmark;
 import io.sapl.benchmark.jmh.RsocketBenchmark;
+import io.sapl.benchmark.report.JmhResultMerger;
+import io.sapl.benchmark.report.SoakReportGenerator;
+import io.sapl.benchmark.soak.LatencyHistogram;
 import io.sapl.benchmark.util.BenchmarkException;
+import io.sapl.benchmark.util.EchoPIP;
+import io.sapl.benchmark.util.Payloads;
 import io.sapl.interpreter.InitializationException;
+import io.sapl.pdp.PolicyDecisionPointFactory;
 
 class SaplPdpBenchmarkTest {
     private static final String tmpReportPath = "tmp_benchmark_test";
@@ -89,6 +107,140 @@ void whenExecutingEmbeddedBenchmark_withInvalidSubscription_thenExceptionIsThrow
         }
     }
 
+    @Test
+    void whenConfiguringJvmProfiles_thenCommonJvmArgsArePrepended() throws IOException {
+        var benchmarkConfig = BenchmarkConfiguration.fromFile("src/test/resources/unittest_benchmark_config.yaml");
+        Assertions.assertFalse(benchmarkConfig.usesJvmProfiles());
+        Assertions.assertEquals(List.of("-Xms1G", "-Xmx1G"),
+                benchmarkConfig.getEffectiveJvmProfiles().get(0).getJvmArgs());
+
+        benchmarkConfig.setJvmProfiles(List.of(new HashMap<>(Map.of("name", "g1", "jvm_args", List.of("-XX:+UseG1GC"))),
+                new HashMap<>(Map.of("name", "zgc", "jvm_args", List.of("-XX:+UseZGC")))));
+        var profiles = benchmarkConfig.getEffectiveJvmProfiles();
+        Assertions.assertTrue(benchmarkConfig.usesJvmProfiles());
+        Assertions.assertEquals(2, profiles.size());
+        Assertions.assertEquals("zgc", profiles.get(1).getName());
+        Assertions.assertEquals(List.of("-Xms1G", "-Xmx1G", "-XX:+UseZGC"), profiles.get(1).getJvmArgs());
+    }
+
+    @Test
+    void whenConfiguringJvmProfiles_withInvalidEntries_thenExceptionIsThrown() throws IOException {
+        var benchmarkConfig = BenchmarkConfiguration.fromFile("src/test/resources/unittest_benchmark_config.yaml");
+        var invalidName     = List.<Map<String, Object>>of(new HashMap<>(Map.of("name", "../g1")));
+        assertThrows(BenchmarkException.class, () -> benchmarkConfig.setJvmProfiles(invalidName));
+        var duplicateName = List.<Map<String, Object>>of(new HashMap<>(Map.of("name", "g1")),
+                new HashMap<>(Map.of("name", "g1")));
+        assertThrows(BenchmarkException.class, () -> benchmarkConfig.setJvmProfiles(duplicateName));
+        var unknownEntry = List.<Map<String, Object>>of(new HashMap<>(Map.of("name", "g1", "gc", "G1")));
+        assertThrows(BenchmarkException.class, () -> benchmarkConfig.setJvmProfiles(unknownEntry));
+    }
+
+    @Test
+    void whenMergingWorkerResults_thenThroughputIsSummedAndResponseTimesArePooled() throws IOException {
+        var workerFolders = List.of(Path.of(tmpReportPath, "worker_0"), Path.of(tmpReportPath, "worker_1"));
+        var rawData       = List.of("[[100.0, 200.0]]", "[[300.0, 400.0]]");
+        for (int i = 0; i < workerFolders.size(); i++) {
+            Files.createDirectories(workerFolders.get(i));
+            Files.writeString(workerFolders.get(i).resolve("throughput_1threads.json"),
+                    jmhResult("thrpt", rawData.get(i)), StandardCharsets.UTF_8);
+            Files.writeString(workerFolders.get(i).resolve("average_response.json"),
+                    jmhResult("avgt", rawData.get(i)), StandardCharsets.UTF_8);
+        }
+        var mergedFolder = Path.of(tmpReportPath, "merged");
+        JmhResultMerger.mergeWorkerResults(workerFolders, mergedFolder);
+
+        var throughput = JsonParser
+                .parseString(Files.readString(mergedFolder.resolve("throughput_1threads.json"), StandardCharsets.UTF_8))
+                .getAsJsonArray().get(0).getAsJsonObject().get("primaryMetric").getAsJsonObject();
+        Assertions.assertEquals(500.0, throughput.get("score").getAsDouble());
+        Assertions.assertEquals("[[400.0,600.0]]", throughput.get("rawData").toString());
+
+        var responseTime = JsonParser
+                .parseString(Files.readString(mergedFolder.resolve("average_response.json"), StandardCharsets.UTF_8))
+                .getAsJsonArray().get(0).getAsJsonObject().get("primaryMetric").getAsJsonObject();
+        Assertions.assertEquals(250.0, responseTime.get("score").getAsDouble());
+        Assertions.assertEquals(2, responseTime.get("rawData").getAsJsonArray().size());
+        Assertions.assertEquals(400.0,
+                responseTime.get("scorePercentiles").getAsJsonObject().get("100.0").getAsDouble());
+    }
+
+    @Test
+    void whenMergingWorkerResults_thenServerCpuEfficiencyCoversAllWorkers() throws IOException {
+        var workerFolders = List.of(Path.of(tmpReportPath, "cpu_worker_0"), Path.of(tmpReportPath, "cpu_worker_1"));
+        var cpuMetrics    = List.of("1000.0", "3000.0");
+        for (int i = 0; i < workerFolders.size(); i++) {
+            Files.createDirectories(workerFolders.get(i));
+            var result = jmhResult("thrpt", "[[1.0]]").replace("}}]",
+                    "}, \"secondaryMetrics\": {\"" + CpuEfficiencyProfiler.SERVER_DECISIONS_PER_CPU_SECOND
+                            + "\": {\"score\": " + cpuMetrics.get(i) + "}, \""
+                            + CpuEfficiencyProfiler.SERVER_CPU_MS_PER_DECISION + "\": {\"score\": 1.0}}}]");
+            Files.writeString(workerFolders.get(i).resolve("throughput_1threads.json"), result,
+                    StandardCharsets.UTF_8);
+        }
+        var mergedFolder = Path.of(tmpReportPath, "cpu_merged");
+        JmhResultMerger.mergeWorkerResults(workerFolders, mergedFolder);
+
+        var secondaryMetrics = JsonParser
+                .parseString(Files.readString(mergedFolder.resolve("throughput_1threads.json"), StandardCharsets.UTF_8))
+                .getAsJsonArray().get(0).getAsJsonObject().get("secondaryMetrics").getAsJsonObject();
+        Assertions.assertEquals(4000.0, secondaryMetrics.get(CpuEfficiencyProfiler.SERVER_DECISIONS_PER_CPU_SECOND)
+                .getAsJsonObject().get("score").getAsDouble());
+        Assertions.assertEquals(0.25, secondaryMetrics.get(CpuEfficiencyProfiler.SERVER_CPU_MS_PER_DECISION)
+                .getAsJsonObject().get("score").getAsDouble());
+    }
+
+    private static String jmhResult(String mode, String rawData) {
+        return "[{\"benchmark\": \"io.sapl.benchmark.jmh.HttpBenchmark.noAuthDecideOnce\", \"mode\": \"" + mode
+                + "\", \"params\": {\"contextJsonString\": \"{}\"}, \"primaryMetric\": {\"score\": 0.0, \"rawData\": "
+                + rawData + "}}]";
+    }
+
+    @Test
+    void whenAnalyzingSoakSamples_thenMonotonicGrowthIsFlagged() {
+        var growingHeap = new double[] { 500, 90, 100, 101, 103, 104, 108, 109, 112, 115, 118, 120 };
+        Assertions.assertEquals("growing", SoakReportGenerator.verdict(growingHeap, 2, false));
+        var stableHeap = new double[] { 500, 90, 100, 110, 99, 103, 101, 108, 100, 104, 102, 101 };
+        Assertions.assertEquals("stable", SoakReportGenerator.verdict(stableHeap, 2, false));
+        var shrinkingThroughput = new double[] { 10, 1000, 990, 960, 950, 930, 900, 880, 860, 850 };
+        Assertions.assertEquals("degrading", SoakReportGenerator.verdict(shrinkingThroughput, 2, true));
+        Assertions.assertEquals("insufficient samples", SoakReportGenerator.verdict(new double[] { 1, 2, 3 }, 2, false));
+    }
+
+    @Test
+    void whenRecordingLatencies_thenPercentileIsWithinBucketPrecision() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1_000_000L);
+        }
+        var p99 = histogram.percentileMillisAndReset(99D);
+        Assertions.assertTrue(p99 >= 990D && p99 <= 990D * 1.05D, "p99=" + p99);
+        Assertions.assertTrue(Double.isNaN(histogram.percentileMillisAndReset(99D)));
+    }
+
+    @Test
+    void whenGeneratingPayloads_thenSizeIsReachedAndPayloadPoliciesPermit() throws InitializationException {
+        for (int bytes : new int[] { 100, 10240 }) {
+            var size = Payloads.resourceOfSize(bytes).toString().length();
+            Assertions.assertTrue(size >= bytes && size < bytes + 128, "size=" + size);
+        }
+        var pdp = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint("/" + PayloadSizeBenchmark.POLICY_FOLDER,
+                List::of, () -> List.of(EchoPIP.class), List::of, List::of);
+        assertDoesNotThrow(() -> Helper.decideOnce(pdp, Payloads.subscriptionOfSize("transform", 1024)));
+        assertDoesNotThrow(() -> Helper.decideOnce(pdp, Payloads.subscriptionOfSize("filter", 1024)));
+    }
+
+    @Test
+    void whenCancellingDecideStreamsWithAttributes_thenPipStreamsAreReleased() throws InitializationException {
+        var pdp          = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint("/" + ChurnBenchmark.POLICY_FOLDER,
+                List::of, () -> List.of(EchoPIP.class), List::of, List::of);
+        var subscription = AuthorizationSubscription.of("Willi", "churn_attribute", "session");
+        var baseline     = EchoPIP.activeStreams();
+        for (int i = 0; i < 100; i++) {
+            Helper.decide(pdp, subscription);
+        }
+        Assertions.assertEquals(baseline, EchoPIP.activeStreams());
+    }
+
     @Test
     void whenLoadingContaxtFromString_withInvalidJson_thenExcpetionIsThrown() {
         assertThrows(Exception.class, () -> BenchmarkExecutionContext.fromString("{invalidjson]"));
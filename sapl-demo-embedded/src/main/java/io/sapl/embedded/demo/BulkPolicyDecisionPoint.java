@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.util.Comparator;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Makes one decision for each subscription of a possibly very large stream of
+ * subscriptions, e.g., for offline access reviews.
+ * <p>
+ * The subscriptions are distributed round-robin over parallel rails, one per
+ * core by default. Each rail requests at most prefetch subscriptions ahead, so
+ * the memory used is bounded independent of the number of subscriptions. Each
+ * rail makes its decisions one after the other with decideOnce.
+ * <p>
+ * Unordered results are emitted as soon as any rail has made a decision. For
+ * ordered results, the rails are merged by the index of the subscription. Each
+ * rail is ordered by itself, so this only holds back decisions of fast rails
+ * until the slower rails caught up.
+ */
+public class BulkPolicyDecisionPoint {
+
+    static final int DEFAULT_PREFETCH = 256;
+
+    private final PolicyDecisionPoint pdp;
+
+    private final int parallelism;
+
+    private final int prefetch;
+
+    private final Scheduler scheduler;
+
+    /**
+     * A decision for the subscription at the given position (starting with 0) of
+     * the stream of subscriptions.
+     */
+    public record BulkDecision(long index, AuthorizationSubscription subscription, AuthorizationDecision decision) {
+    }
+
+    public BulkPolicyDecisionPoint(PolicyDecisionPoint pdp) {
+        this(pdp, Runtime.getRuntime().availableProcessors(), DEFAULT_PREFETCH);
+    }
+
+    public BulkPolicyDecisionPoint(PolicyDecisionPoint pdp, int parallelism, int prefetch) {
+        this.pdp         = pdp;
+        this.parallelism = parallelism;
+        this.prefetch    = prefetch;
+        this.scheduler   = Schedulers.parallel();
+    }
+
+    /**
+     * @return the decisions in the order of the subscriptions
+     */
+    public Flux<BulkDecision> decideOrdered(Flux<AuthorizationSubscription> subscriptions) {
+        return decideOnRails(subscriptions).ordered(Comparator.comparingLong(BulkDecision::index), prefetch);
+    }
+
+    /**
+     * @return the decisions in the order they were made
+     */
+    public Flux<BulkDecision> decideUnordered(Flux<AuthorizationSubscription> subscriptions) {
+        return decideOnRails(subscriptions).sequential(prefetch);
+    }
+
+    private ParallelFlux<BulkDecision> decideOnRails(Flux<AuthorizationSubscription> subscriptions) {
+        return subscriptions.index().parallel(parallelism, prefetch).runOn(scheduler, prefetch)
+                .concatMap(indexed -> pdp.decideOnce(indexed.getT2())
+                        .map(decision -> new BulkDecision(indexed.getT1(), indexed.getT2(), decision)));
+    }
+
+}
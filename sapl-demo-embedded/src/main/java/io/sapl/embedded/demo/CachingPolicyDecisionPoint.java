@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A PDP decorator caching the results of decideOnce for identical
+ * subscriptions. The cache key is the SHA-256 hash of the subscription
+ * serialized with sorted object keys, so subscriptions only differing in the
+ * order of their keys share one entry. The cache holds at most maximumSize
+ * entries, evicts the least recently used entry first and expires entries after
+ * the time to live. Indeterminate decisions are never cached.
+ * <p>
+ * The decision of a policy using a streaming attribute may change at any time,
+ * so it must not be cached. Whenever the policies are (re-)loaded, the
+ * attributes referenced by the policies are compared with the given set of
+ * non-streaming attributes. If any other attribute is referenced, caching is
+ * switched off and all calls are passed to the delegate.
+ * <p>
+ * {@link #invalidateOn(Flux)} invalidates the cache whenever the policies of
+ * the delegate changed, e.g., on each batch applied by a
+ * {@link DebouncedPolicyFolder}. A decision evaluated before the invalidation is
+ * not cached when it completes after it.
+ * <p>
+ * decide() streams are passed through, as the delegate updates them on changes
+ * by itself.
+ */
+public class CachingPolicyDecisionPoint implements PolicyDecisionPoint, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingPolicyDecisionPoint.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final PolicyDecisionPoint delegate;
+
+    private final long timeToLiveNanos;
+
+    private final Set<String> nonStreamingAttributes;
+
+    private final Supplier<Set<String>> policyAttributes;
+
+    private final Map<String, CacheEntry> cache;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong bypassed = new AtomicLong();
+
+    private final Disposable.Swap invalidations = Disposables.swap();
+
+    private volatile boolean cacheable;
+
+    private record CacheEntry(AuthorizationDecision decision, long expiresAtNanos) {
+    }
+
+    /**
+     * @param delegate               the PDP making the decisions
+     * @param maximumSize            maximum number of cached decisions
+     * @param timeToLive             time after which a cached decision expires
+     * @param nonStreamingAttributes attributes, which emit exactly one value per
+     *                               subscription
+     * @param policyAttributes       supplies the attributes referenced by the
+     *                               current policies, see
+     *                               {@link PolicyAttributes}
+     */
+    public CachingPolicyDecisionPoint(PolicyDecisionPoint delegate, int maximumSize, Duration timeToLive,
+            Set<String> nonStreamingAttributes, Supplier<Set<String>> policyAttributes) {
+        this.delegate               = delegate;
+        this.timeToLiveNanos        = timeToLive.toNanos();
+        this.nonStreamingAttributes = Set.copyOf(nonStreamingAttributes);
+        this.policyAttributes       = policyAttributes;
+        this.cache                  = new LeastRecentlyUsedMap<>(maximumSize);
+        this.cacheable              = checkCacheable();
+    }
+
+    @Override
+    public Flux<AuthorizationDecision> decide(AuthorizationSubscription authzSubscription) {
+        return delegate.decide(authzSubscription);
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> decideOnce(AuthorizationSubscription authzSubscription) {
+        if (!cacheable) {
+            bypassed.incrementAndGet();
+            return delegate.decideOnce(authzSubscription);
+        }
+        var key    = canonicalKey(authzSubscription);
+        var cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return Mono.just(cached);
+        }
+        misses.incrementAndGet();
+        var evaluatedInGeneration = generation.get();
+        return delegate.decideOnce(authzSubscription)
+                .doOnNext(decision -> put(key, decision, evaluatedInGeneration));
+    }
+
+    @Override
+    public Flux<IdentifiableAuthorizationDecision> decide(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decide(multiAuthzSubscription);
+    }
+
+    @Override
+    public Flux<MultiAuthorizationDecision> decideAll(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decideAll(multiAuthzSubscription);
+    }
+
+    private AuthorizationDecision get(String key) {
+        synchronized (cache) {
+            var entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAtNanos() >= 0) {
+                cache.remove(key);
+                return null;
+            }
+            return entry.decision();
+        }
+    }
+
+    /**
+     * A decision evaluated before an invalidation may be based on the old
+     * policies, so it is only cached if no invalidation happened in between.
+     */
+    private void put(String key, AuthorizationDecision decision, long evaluatedInGeneration) {
+        if (decision.getDecision() == Decision.INDETERMINATE) {
+            return;
+        }
+        synchronized (cache) {
+            if (generation.get() == evaluatedInGeneration) {
+                cache.put(key, new CacheEntry(decision, System.nanoTime() + timeToLiveNanos));
+            }
+        }
+    }
+
+    /**
+     * Removes all cached decisions and checks the policies for streaming
+     * attributes again.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            generation.incrementAndGet();
+            cache.clear();
+        }
+        cacheable = checkCacheable();
+    }
+
+    private boolean checkCacheable() {
+        var streamingAttributes = new ArrayList<String>();
+        for (var attribute : policyAttributes.get()) {
+            if (!nonStreamingAttributes.contains(attribute)) {
+                streamingAttributes.add(attribute);
+            }
+        }
+        if (!streamingAttributes.isEmpty()) {
+            LOGGER.info("Decision caching disabled, policies reference streaming attributes: {}",
+                    streamingAttributes);
+        }
+        return streamingAttributes.isEmpty();
+    }
+
+    /**
+     * Invalidates the cache on each signal, which must be emitted after the
+     * delegate switched to the changed policies.
+     */
+    public void invalidateOn(Flux<?> policyChanges) {
+        invalidations.update(policyChanges.subscribe(change -> {
+            LOGGER.info("Policies changed, invalidating decision cache");
+            invalidateAll();
+        }));
+    }
+
+    @Override
+    public void close() {
+        invalidations.dispose();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBypassed() {
+        return bypassed.get();
+    }
+
+    static String canonicalKey(AuthorizationSubscription authzSubscription) {
+        var canonical = new StringBuilder();
+        appendCanonical(MAPPER.valueToTree(authzSubscription), canonical);
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void appendCanonical(JsonNode node, StringBuilder canonical) {
+        if (node.isObject()) {
+            var fieldNames = new ArrayList<String>();
+            node.fieldNames().forEachRemaining(fieldNames::add);
+            fieldNames.sort(null);
+            canonical.append('{');
+            for (var fieldName : fieldNames) {
+                canonical.append(MAPPER.getNodeFactory().textNode(fieldName)).append(':');
+                appendCanonical(node.get(fieldName), canonical);
+                canonical.append(',');
+            }
+            canonical.append('}');
+        } else if (node.isArray()) {
+            canonical.append('[');
+            for (var element : node) {
+                appendCanonical(element, canonical);
+                canonical.append(',');
+            }
+            canonical.append(']');
+        } else {
+            canonical.append(node);
+        }
+    }
+
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.SAPLInterpreter;
+import io.sapl.interpreter.functions.FunctionContext;
+import io.sapl.interpreter.pip.AttributeContext;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.prp.Document;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Feeds the policies of a folder to an embedded PDP in debounced batches.
+ * <p>
+ * The filesystem PDP reacts to every single file event, so a deployment tool
+ * syncing thousands of files makes the PDP update its index and re-evaluate all
+ * open subscriptions thousands of times in a row. This class collects the
+ * events of the source folder until no further event arrived for the quiet
+ * period, or until the maximum wait passed since the first event of the batch,
+ * so a tool writing continuously cannot delay the update forever.
+ * <p>
+ * A batch is applied incrementally: only documents whose content changed are
+ * parsed again, unchanged documents keep their parsed form. Then, the PDP
+ * created by {@link #policyDecisionPoint(AttributeContext, FunctionContext)}
+ * receives all documents in one new configuration with a freshly built index,
+ * so it re-evaluates the open subscriptions once per batch, not once per file.
+ * A batch with an invalid document is rejected as a whole and the PDP keeps the
+ * previous policies. The changes of a rejected batch are kept and applied again
+ * together with the next change. If the watch service lost events, all
+ * documents are compared.
+ * <p>
+ * After the PDP received a batch, the changed documents are mirrored into the
+ * target folder, e.g., for tools inspecting the policies the PDP actually uses.
+ * Files are replaced atomically and unchanged files are not written at all.
+ */
+public class DebouncedPolicyFolder implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DebouncedPolicyFolder.class);
+
+    private static final int DEFAULT_MAX_WAIT_QUIET_PERIODS = 10;
+
+    private final Path source;
+
+    private final Path target;
+
+    private final long quietPeriodNanos;
+
+    private final long maxWaitNanos;
+
+    private final SAPLInterpreter interpreter = new DefaultSAPLInterpreter();
+
+    private final Sinks.Many<Batch> appliedBatches = Sinks.many().replay().latest();
+
+    private final Sinks.Many<Long> appliedBatchNumbers = Sinks.many().multicast().directBestEffort();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong changedDocuments = new AtomicLong();
+
+    private final AtomicLong reevaluations = new AtomicLong();
+
+    private final LongAccumulator lastReevaluationNanos = new LongAccumulator(Math::max, 0L);
+
+    private Map<String, String> sources = Map.of();
+
+    private Map<String, Document> documents = Map.of();
+
+    private volatile long batchStartNanos;
+
+    private volatile long batchEndNanos;
+
+    private WatchService watchService;
+
+    /**
+     * The documents and the pdp.json of an applied batch.
+     */
+    private record Batch(long number, List<Document> documents, JsonNode pdpConfiguration) {
+    }
+
+    /**
+     * Creates a folder with a maximum wait of ten quiet periods.
+     *
+     * @param source      the folder edited by users or deployment tools
+     * @param target      the folder to which applied documents are mirrored
+     * @param quietPeriod time without further events after which a batch is
+     *                    applied
+     */
+    public DebouncedPolicyFolder(Path source, Path target, Duration quietPeriod) {
+        this(source, target, quietPeriod, quietPeriod.multipliedBy(DEFAULT_MAX_WAIT_QUIET_PERIODS));
+    }
+
+    /**
+     * @param source      the folder edited by users or deployment tools
+     * @param target      the folder to which applied documents are mirrored
+     * @param quietPeriod time without further events after which a batch is
+     *                    applied
+     * @param maxWait     time after the first event of a batch after which the
+     *                    batch is applied even if events keep arriving
+     */
+    public DebouncedPolicyFolder(Path source, Path target, Duration quietPeriod, Duration maxWait) {
+        this.source           = source;
+        this.target           = target;
+        this.quietPeriodNanos = quietPeriod.toNanos();
+        this.maxWaitNanos     = maxWait.toNanos();
+    }
+
+    /**
+     * Applies all changed and removed documents in one batch.
+     *
+     * @return the number of documents changed in the batch
+     * @throws IllegalArgumentException if a changed document is invalid
+     */
+    public int synchronizeAll() throws IOException {
+        Files.createDirectories(target);
+        var names = new TreeSet<String>();
+        names.addAll(documentNames(source));
+        names.addAll(sourceNames());
+        return apply(names);
+    }
+
+    /**
+     * Watches the source folder and applies the changes in debounced batches.
+     */
+    public void watch() {
+        try {
+            watchService = source.getFileSystem().newWatchService();
+            source.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to watch " + source, e);
+        }
+        var watcher = new Thread(this::debounce, "policy-folder-debouncer");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Collects the changed names until the batch is due. After the watch service
+     * lost events, the batch covers all documents of both folders. If a batch is
+     * rejected, its names are kept and applied again with the next change, which
+     * usually fixes the invalid document.
+     */
+    private void debounce() {
+        var pending         = new HashSet<String>();
+        var rescan          = false;
+        var rejected        = false;
+        var firstEventNanos = 0L;
+        try {
+            while (true) {
+                var idle = rejected || (pending.isEmpty() && !rescan);
+                var key  = idle ? watchService.take() : poll(firstEventNanos);
+                if (key == null) {
+                    rejected = !applyQuietly(pending, rescan);
+                    if (!rejected) {
+                        pending.clear();
+                        rescan = false;
+                    }
+                    continue;
+                }
+                if (idle) {
+                    firstEventNanos = System.nanoTime();
+                    rejected        = false;
+                }
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        rescan = true;
+                    } else if (event.context() instanceof Path file && isDocument(file.toString())) {
+                        pending.add(file.toString());
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    /**
+     * Waits for the next event for at most the quiet period, and not beyond the
+     * maximum wait of the pending batch.
+     *
+     * @return the next key, or null if the pending batch is to be applied
+     */
+    private WatchKey poll(long firstEventNanos) throws InterruptedException {
+        var remainingNanos = maxWaitNanos - (System.nanoTime() - firstEventNanos);
+        if (remainingNanos <= 0) {
+            return null;
+        }
+        return watchService.poll(Math.min(quietPeriodNanos, remainingNanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return false if the batch was rejected
+     */
+    private boolean applyQuietly(Set<String> names, boolean rescan) {
+        try {
+            if (rescan) {
+                LOGGER.warn("Events of {} were lost, rescanning all documents", source);
+                var allNames = new TreeSet<>(names);
+                allNames.addAll(documentNames(source));
+                allNames.addAll(sourceNames());
+                apply(allNames);
+            } else {
+                apply(names);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to apply policy changes from {}, retrying with the next change", source, e);
+            return false;
+        }
+    }
+
+    private synchronized int apply(Set<String> names) throws IOException {
+        var startNanos     = System.nanoTime();
+        var nextSources    = new TreeMap<>(sources);
+        var nextDocuments  = new TreeMap<>(documents);
+        var changedSources = new TreeMap<String, String>();
+        for (var name : names) {
+            var file = source.resolve(name);
+            if (!Files.exists(file)) {
+                if (nextSources.remove(name) != null) {
+                    nextDocuments.remove(name);
+                    changedSources.put(name, null);
+                }
+                continue;
+            }
+            var content = Files.readString(file, StandardCharsets.UTF_8);
+            if (content.equals(nextSources.get(name))) {
+                continue;
+            }
+            if (name.endsWith(".sapl")) {
+                nextDocuments.put(name, parse(name, content));
+            } else {
+                PolicyFolders.parseConfiguration(content);
+            }
+            nextSources.put(name, content);
+            changedSources.put(name, content);
+        }
+        if (changedSources.isEmpty()) {
+            return 0;
+        }
+        sources         = nextSources;
+        documents       = nextDocuments;
+        batchStartNanos = startNanos;
+        reevaluations.set(0L);
+        var pdpConfiguration = nextSources.get(PolicySnapshot.PDP_CONFIGURATION);
+        appliedBatches.emitNext(new Batch(batches.incrementAndGet(), List.copyOf(nextDocuments.values()),
+                pdpConfiguration == null ? null : PolicyFolders.parseConfiguration(pdpConfiguration)),
+                Sinks.EmitFailureHandler.FAIL_FAST);
+        batchEndNanos = System.nanoTime();
+        changedDocuments.addAndGet(changedSources.size());
+        LOGGER.info("Applied {} changed of {} touched documents from {}", changedSources.size(), names.size(),
+                source);
+        try {
+            mirror(changedSources);
+        } finally {
+            appliedBatchNumbers.emitNext(batches.get(), Sinks.EmitFailureHandler.FAIL_FAST);
+        }
+        return changedSources.size();
+    }
+
+    private Document parse(String name, String content) {
+        var document = interpreter.parseDocument(content);
+        if (document.isInvalid()) {
+            throw new IllegalArgumentException("Invalid policy " + source.resolve(name));
+        }
+        return document;
+    }
+
+    private void mirror(Map<String, String> changedSources) throws IOException {
+        for (var changed : changedSources.entrySet()) {
+            var to = target.resolve(changed.getKey());
+            if (changed.getValue() == null) {
+                Files.deleteIfExists(to);
+            } else {
+                var temporary = Files.createTempFile(target, ".", ".tmp");
+                Files.writeString(temporary, changed.getValue(), StandardCharsets.UTF_8);
+                Files.move(temporary, to, ATOMIC_MOVE, REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private synchronized Set<String> sourceNames() {
+        return Set.copyOf(sources.keySet());
+    }
+
+    private static Set<String> documentNames(Path folder) throws IOException {
+        var names = new TreeSet<String>();
+        try (var files = Files.list(folder)) {
+            files.map(file -> file.getFileName().toString()).filter(DebouncedPolicyFolder::isDocument)
+                    .forEach(names::add);
+        }
+        return names;
+    }
+
+    private static boolean isDocument(String name) {
+        return name.endsWith(".sapl") || PolicySnapshot.PDP_CONFIGURATION.equals(name);
+    }
+
+    /**
+     * Creates a PDP receiving the documents of each applied batch as one new
+     * configuration. The decision interceptor of the configuration counts every
+     * decision evaluated by the PDP, including decisions equal to the previous
+     * decision of a subscription, which the PDP does not emit.
+     */
+    public EmbeddedPolicyDecisionPoint policyDecisionPoint(AttributeContext attributeContext,
+            FunctionContext functionContext) {
+        return new EmbeddedPolicyDecisionPoint(() -> appliedBatches.asFlux()
+                .map(batch -> PolicyFolders.configuration("batch-" + batch.number(), attributeContext,
+                        functionContext, batch.documents(), batch.pdpConfiguration(), tracedDecision -> {
+                            onReevaluation();
+                            return tracedDecision;
+                        })));
+    }
+
+    /**
+     * Emits the number of each batch after the PDP received it and the changed
+     * documents were mirrored into the target folder, e.g., to invalidate caches
+     * of decisions or of information derived from the target folder.
+     */
+    public Flux<Long> appliedBatches() {
+        return appliedBatchNumbers.asFlux();
+    }
+
+    private void onReevaluation() {
+        reevaluations.incrementAndGet();
+        lastReevaluationNanos.accumulate(System.nanoTime());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getChangedDocuments() {
+        return changedDocuments.get();
+    }
+
+    /**
+     * @return the number of decisions evaluated by the PDP since the last batch
+     *         was applied, whether or not they differ from the previous decision
+     */
+    public long getReevaluations() {
+        return reevaluations.get();
+    }
+
+    /**
+     * @return the time from the start of the last batch until the PDP evaluated
+     *         its last decision, or until the batch was applied if no decision was
+     *         evaluated since
+     */
+    public Duration getLastReindexDuration() {
+        var end = Math.max(batchEndNanos, lastReevaluationNanos.get());
+        return Duration.ofNanos(Math.max(0L, end - batchStartNanos));
+    }
+
+}
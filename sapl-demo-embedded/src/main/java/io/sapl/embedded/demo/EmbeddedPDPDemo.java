@@ -15,9 +15,19 @@
  */
 package io.sapl.embedded.demo;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,11 +35,16 @@
 import io.sapl.api.pdp.AuthorizationDecision;
 import io.sapl.api.pdp.AuthorizationSubscription;
 import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.interpreter.functions.AnnotationFunctionContext;
+import io.sapl.interpreter.pip.AnnotationAttributeContext;
 import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
 import io.sapl.pdp.PolicyDecisionPointFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import reactor.core.Disposables;
 
 /**
  * This demo shows how to manually construct a PDP without infrastructure
@@ -39,7 +54,7 @@
  */
 @Command(name = "sapl-demo-embedded", version = "3.0.0-SNAPSHOT", mixinStandardHelpOptions = true, description = "This demo shows how to manually construct a PDP without infrastructure support. "
         + "A Custom Policy Information Point and Function Library are bound to the PDP. "
-        + "The demo runs a few performance tests and illustrates different ways of invoking the PDP. " + "By default, ")
+        + "The demo runs a few performance tests and illustrates different ways of invoking the PDP. " + "By default, ", subcommands = EvaluateCommand.class)
 public class EmbeddedPDPDemo implements Callable<Integer> {
 
     private static final String LINE = "------------------------------------------------------------------------";
@@ -54,6 +69,18 @@ public class EmbeddedPDPDemo implements Callable<Integer> {
             "--filesystem" }, description = "If set, policies and PDP configuration are loaded from the filesystem instead of the bundled resources. Set path with -p.")
     boolean filesystem;
 
+    @Option(names = { "-b",
+            "--bulk" }, description = "If set, only decides all subscriptions of the given JSON Lines file on all cores and reports the decisions per second.")
+    Path bulkFile;
+
+    @Option(names = { "-u",
+            "--unordered" }, description = "With -b, emits the decisions as they are made instead of in the order of the subscriptions.")
+    boolean unordered;
+
+    private Path pdpFolder;
+
+    private DebouncedPolicyFolder policySync;
+
     private static final String SUBJECT = "willi";
 
     private static final String ACTION_READ = "read";
@@ -70,6 +97,36 @@ public class EmbeddedPDPDemo implements Callable<Integer> {
 
     private static final int DEMO_RUNS = 20_000;
 
+    private static final int CACHE_SIZE = 10_000;
+
+    private static final int SNAPSHOT_STARTUP_RUNS = 100;
+
+    private static final Duration CACHE_TIME_TO_LIVE = Duration.ofSeconds(30);
+
+    /**
+     * The EchoPIP emits exactly one value per subscription, so decisions using it
+     * may be cached.
+     */
+    private static final Set<String> NON_STREAMING_ATTRIBUTES = Set.of("echo.echo");
+
+    private static final Duration DEBOUNCE_QUIET_PERIOD = Duration.ofMillis(500);
+
+    private static final Duration DEBOUNCE_MAX_WAIT = Duration.ofSeconds(5);
+
+    private static final int REINDEX_SUBSCRIPTIONS = 100;
+
+    private static final int REINDEX_GENERATED_POLICIES = 1_000;
+
+    private static final int DEMO_TENANTS = 10_000;
+
+    private static final int TEST_TENANTS = 20;
+
+    private static final long TENANT_MEMORY_BUDGET_BYTES = 32L * 1_048_576L;
+
+    private static final int MEMOIZATION_SIZE = 1_000;
+
+    private static final int AUDITED_RESOURCES = 10;
+
     private static final int TEST_RUNS = 20;
 
     private static final double BILLION = 1_000_000_000.0D;
@@ -99,18 +156,21 @@ public Integer call() throws Exception {
             /*
              * The factory method PolicyDecisionPointFactory.filesystemPolicyDecisionPoint
              * creates a PDP witch is retrieving the policies and its configuration form the
-             * file system.
-             *
-             * It takes a parameter with the path and lists of extensions to load.
+             * file system. This PDP updates its index and re-evaluates all subscriptions on
+             * every single file event.
              *
-             * The first list contains policy information points. The second list contains
-             * function libraries.
-             *
-             * The PDP will monitor the path at runtime for any changes made to the policies
-             * an update any subscribed PEPs accordingly.
+             * Here, the DebouncedPolicyFolder watches the path instead. It collects the
+             * changes in batches and passes each batch to the PDP as one new
+             * configuration, so a deployment tool syncing many files does not trigger one
+             * re-evaluation per file event. The applied policies are mirrored into a
+             * working copy of the path.
              */
-            pdp = PolicyDecisionPointFactory.filesystemPolicyDecisionPoint(path, List::of, () -> List.of(EchoPIP.class),
-                    List::of, () -> List.of(SimpleFunctionLibrary.class));
+            pdpFolder  = Files.createTempDirectory("sapl-pdp-policies");
+            policySync = new DebouncedPolicyFolder(policyFolder(), pdpFolder, DEBOUNCE_QUIET_PERIOD,
+                    DEBOUNCE_MAX_WAIT);
+            policySync.synchronizeAll();
+            policySync.watch();
+            pdp = debouncedPolicyDecisionPoint(policySync);
         } else {
             /*
              * The factory method PolicyDecisionPointFactory.resourcesPolicyDecisionPoint
@@ -125,22 +185,100 @@ public Integer call() throws Exception {
              *
              * The PDP will monitor the path at runtime for any changes made to the policies
              * an update any subscribed PEPs accordingly.
+             *
+             * Here, the PDP is created from the policy snapshot validated at build time, if
+             * it is bundled and intact, and only otherwise from the resources.
              */
-            pdp = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint(List::of, () -> List.of(EchoPIP.class),
-                    List::of, () -> List.of(SimpleFunctionLibrary.class));
+            var snapshotPdp = snapshotPolicyDecisionPoint();
+            pdp = snapshotPdp.isPresent() ? snapshotPdp.get() : resourcesPolicyDecisionPoint();
         }
 
-        blockingUsageDemo(pdp);
+        try {
+            if (bulkFile != null) {
+                runBulk(pdp);
+                return 0;
+            }
+
+            blockingUsageDemo(pdp);
+
+            reactiveUsageDemo(pdp);
+
+            runPerformanceDemoSingleBlocking(pdp);
+
+            runPerformanceDemoSingleSequentialReactive(pdp);
+
+            runPerformanceDemoParallel(pdp);
+
+            runPerformanceDemoCached(pdp);
 
-        reactiveUsageDemo(pdp);
+            runSnapshotDemo();
 
-        runPerformanceDemoSingleBlocking(pdp);
+            runReindexDemo();
 
-        runPerformanceDemoSingleSequentialReactive(pdp);
+            runMultiTenantDemo();
 
-        LOGGER.info("End of demo.");
-        pdp.destroy();
-        return 0;
+            runMemoizationDemo();
+
+            LOGGER.info("End of demo.");
+            return 0;
+        } finally {
+            pdp.destroy();
+            if (policySync != null) {
+                policySync.close();
+                deleteFolder(pdpFolder);
+            }
+        }
+    }
+
+    private static EmbeddedPolicyDecisionPoint debouncedPolicyDecisionPoint(DebouncedPolicyFolder sync)
+            throws InitializationException {
+        var attributeContext = new AnnotationAttributeContext();
+        attributeContext.loadPolicyInformationPoint(EchoPIP.class);
+        var functionContext = new AnnotationFunctionContext();
+        functionContext.loadLibrary(SimpleFunctionLibrary.class);
+        return sync.policyDecisionPoint(attributeContext, functionContext);
+    }
+
+    private static EmbeddedPolicyDecisionPoint resourcesPolicyDecisionPoint() throws InitializationException {
+        return PolicyDecisionPointFactory.resourcesPolicyDecisionPoint(List::of, () -> List.of(EchoPIP.class),
+                List::of, () -> List.of(SimpleFunctionLibrary.class));
+    }
+
+    /**
+     * Creates a PDP from the bundled policy snapshot.
+     *
+     * @return the PDP, or empty if the snapshot is missing, damaged or contains an
+     *         invalid document
+     */
+    private static Optional<EmbeddedPolicyDecisionPoint> snapshotPolicyDecisionPoint()
+            throws InitializationException {
+        var snapshot = PolicySnapshot.fromResource(PolicySnapshot.RESOURCE);
+        if (snapshot.isEmpty()) {
+            return Optional.empty();
+        }
+        var attributeContext = new AnnotationAttributeContext();
+        attributeContext.loadPolicyInformationPoint(EchoPIP.class);
+        var functionContext = new AnnotationFunctionContext();
+        functionContext.loadLibrary(SimpleFunctionLibrary.class);
+        try {
+            return Optional.of(PolicyFolders.fromSnapshot(snapshot.get(), "snapshot", attributeContext,
+                    functionContext, new DefaultSAPLInterpreter()).pdp());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring policy snapshot {}: {}", PolicySnapshot.RESOURCE, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Creates a PDP for one-off evaluations, from the policy folder set by -p with
+     * -f, or else from the bundled resources.
+     */
+    EmbeddedPolicyDecisionPoint staticPolicyDecisionPoint() throws InitializationException {
+        if (filesystem) {
+            return PolicyDecisionPointFactory.filesystemPolicyDecisionPoint(policyFolder().toString(), List::of,
+                    () -> List.of(EchoPIP.class), List::of, () -> List.of(SimpleFunctionLibrary.class));
+        }
+        return resourcesPolicyDecisionPoint();
     }
 
     /**
@@ -204,21 +342,18 @@ private static void runPerformanceDemoSingleBlocking(PolicyDecisionPoint pdp) {
         LOGGER.info(LINE);
     }
 
-    private static void runPerformanceDemoSingleSequentialReactive(PolicyDecisionPoint pdp) {
+    private static void runPerformanceDemoSingleSequentialReactive(PolicyDecisionPoint pdp)
+            throws InterruptedException {
         var runs = getRuns();
         LOGGER.info("");
         LOGGER.info("Demo Part 4: Perform a small benchmark for sequential .take(1) decisions.");
 
         LOGGER.info("Warming up for {} runs...", runs);
-        for (int i = 0; i < runs; i++) {
-            pdp.decide(READ_SUBSCRIPTION).take(1).subscribe();
-        }
+        subscribeAndAwaitCompletion(pdp, runs);
         LOGGER.info("Measure time for {} runs...", runs);
 
         long start = System.nanoTime();
-        for (int i = 0; i < runs; i++) {
-            pdp.decide(READ_SUBSCRIPTION).take(1).subscribe();
-        }
+        subscribeAndAwaitCompletion(pdp, runs);
         long end = System.nanoTime();
         LOGGER.info("");
         logResults("Benchmark results for .take(1) access:", runs, start, end);
@@ -226,6 +361,276 @@ private static void runPerformanceDemoSingleSequentialReactive(PolicyDecisionPoi
         LOGGER.info(LINE);
     }
 
+    /**
+     * The .take(1) subscriptions may complete asynchronously, e.g., if a policy
+     * uses attributes. Counting down a latch on completion makes sure the time is
+     * only taken after all decisions have been made.
+     */
+    private static void subscribeAndAwaitCompletion(PolicyDecisionPoint pdp, int runs) throws InterruptedException {
+        var completed = new CountDownLatch(runs);
+        for (int i = 0; i < runs; i++) {
+            pdp.decide(READ_SUBSCRIPTION).take(1).subscribe(decision -> {
+            }, error -> completed.countDown(), completed::countDown);
+        }
+        completed.await();
+    }
+
+    private static void runPerformanceDemoParallel(PolicyDecisionPoint pdp) throws InterruptedException {
+        LOGGER.info("");
+        LOGGER.info("Demo Part 5: Perform a small benchmark for parallel decisions on {} available processors.",
+                Runtime.getRuntime().availableProcessors());
+        new ParallelPerformanceDemo(pdp, READ_SUBSCRIPTION, getRuns()).run();
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Repeated decideOnce calls for the same subscription are answered from the
+     * cache. In filesystem mode, the cache is invalidated on each batch of policy
+     * changes applied to the PDP.
+     */
+    private void runPerformanceDemoCached(PolicyDecisionPoint pdp) throws Exception {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 6: Perform a small benchmark for decideOnce with and without a decision cache.");
+        try (var cachingPdp = new CachingPolicyDecisionPoint(pdp, CACHE_SIZE, CACHE_TIME_TO_LIVE,
+                NON_STREAMING_ATTRIBUTES, this::policyAttributes)) {
+            if (filesystem) {
+                cachingPdp.invalidateOn(policySync.appliedBatches());
+            }
+            LOGGER.info("Measure time for {} runs without cache...", runs);
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                pdp.decideOnce(READ_SUBSCRIPTION).block();
+            }
+            long end = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for decideOnce without cache:", runs, start, end);
+            LOGGER.info("");
+            LOGGER.info("Measure time for {} runs with cache...", runs);
+            start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                cachingPdp.decideOnce(READ_SUBSCRIPTION).block();
+            }
+            end = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for decideOnce with cache:", runs, start, end);
+            LOGGER.info("Cache hits: {}, misses: {}, bypassed: {}", cachingPdp.getHits(), cachingPdp.getMisses(),
+                    cachingPdp.getBypassed());
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Measures the time to create a PDP and make its first decision, from the policy
+     * snapshot created at build time by {@link PolicySnapshotTool} and from the
+     * policies in the resources.
+     */
+    private static void runSnapshotDemo() throws Exception {
+        var runs = Math.min(getRuns(), SNAPSHOT_STARTUP_RUNS);
+        LOGGER.info("");
+        LOGGER.info("Demo Part 7: Compare the PDP startup from the policy snapshot and from the resources.");
+        if (PolicySnapshot.fromResource(PolicySnapshot.RESOURCE).isEmpty()) {
+            LOGGER.info("No valid policy snapshot bundled. Run 'mvn process-classes' to create it.");
+            LOGGER.info("");
+            LOGGER.info(LINE);
+            return;
+        }
+        for (var fromSnapshot : List.of(true, false)) {
+            var title = fromSnapshot ? "from the snapshot" : "from the resources";
+            LOGGER.info("Measure time for {} startups {}...", runs, title);
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                var pdp = fromSnapshot ? snapshotPolicyDecisionPoint().orElseThrow() : resourcesPolicyDecisionPoint();
+                pdp.decideOnce(READ_SUBSCRIPTION).block();
+                pdp.destroy();
+            }
+            long end = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for startups " + title + ":", runs, start, end);
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Simulates a deployment tool syncing many policies into the policy folder
+     * while subscriptions are open. The demo works on copies of the policy folder
+     * and leaves the policies in the folder set by -p untouched.
+     */
+    private void runReindexDemo() throws Exception {
+        LOGGER.info("");
+        LOGGER.info("Demo Part 8: Sync {} generated policies into a watched policy folder with {} open subscriptions.",
+                REINDEX_GENERATED_POLICIES, REINDEX_SUBSCRIPTIONS);
+        if (!filesystem) {
+            LOGGER.info("This part requires the filesystem mode (-f), skipping.");
+            LOGGER.info("");
+            LOGGER.info(LINE);
+            return;
+        }
+        var deploymentFolder = Files.createTempDirectory("sapl-deployment");
+        var workFolder       = Files.createTempDirectory("sapl-pdp-policies");
+        try (var copy = new DebouncedPolicyFolder(policyFolder(), deploymentFolder, DEBOUNCE_QUIET_PERIOD);
+                var sync = new DebouncedPolicyFolder(deploymentFolder, workFolder, DEBOUNCE_QUIET_PERIOD,
+                        DEBOUNCE_MAX_WAIT)) {
+            copy.synchronizeAll();
+            sync.synchronizeAll();
+            sync.watch();
+            var pdp           = debouncedPolicyDecisionPoint(sync);
+            var firstDecision = new CountDownLatch(REINDEX_SUBSCRIPTIONS);
+            var subscriptions = Disposables.composite();
+            for (int i = 0; i < REINDEX_SUBSCRIPTIONS; i++) {
+                var subscription = AuthorizationSubscription.of(SUBJECT, ACTION_WRITE, RESOURCE + i);
+                subscriptions.add(pdp.decide(subscription).subscribe(decision -> firstDecision.countDown()));
+            }
+            firstDecision.await(10, TimeUnit.SECONDS);
+            var batches          = sync.getBatches();
+            var changedDocuments = sync.getChangedDocuments();
+
+            LOGGER.info("Writing {} generated policies and rewriting the existing ones unchanged...",
+                    REINDEX_GENERATED_POLICIES);
+            try (var files = Files.list(deploymentFolder)) {
+                for (var file : files.toList()) {
+                    Files.write(file, Files.readAllBytes(file));
+                }
+            }
+            for (int i = 0; i < REINDEX_GENERATED_POLICIES; i++) {
+                Files.writeString(deploymentFolder.resolve("generated_" + i + ".sapl"),
+                        "policy \"generated " + i + "\" deny action == \"generated-" + i + "\"");
+            }
+            awaitReindex(sync, batches);
+
+            LOGGER.info("Batches applied        : {}", sync.getBatches() - batches);
+            LOGGER.info("Documents changed      : {}", sync.getChangedDocuments() - changedDocuments);
+            LOGGER.info("Decisions re-evaluated : {}", sync.getReevaluations());
+            LOGGER.info("Reindex duration       : {} ms", sync.getLastReindexDuration().toMillis());
+            subscriptions.dispose();
+            pdp.destroy();
+        } finally {
+            deleteFolder(deploymentFolder);
+            deleteFolder(workFolder);
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Decides all subscriptions of the bulk file with the
+     * {@link BulkPolicyDecisionPoint}. The file is streamed, so its size is not
+     * limited by the heap.
+     */
+    private void runBulk(PolicyDecisionPoint pdp) {
+        LOGGER.info("Deciding subscriptions of {} ({})...", bulkFile, unordered ? "unordered" : "ordered");
+        var  bulkPdp       = new BulkPolicyDecisionPoint(pdp);
+        var  subscriptions = SubscriptionFiles.readJsonLines(bulkFile);
+        var  decisions     = unordered ? bulkPdp.decideUnordered(subscriptions) : bulkPdp.decideOrdered(subscriptions);
+        long start         = System.nanoTime();
+        var  count         = decisions.count().block();
+        long end           = System.nanoTime();
+        LOGGER.info("");
+        logResults("Bulk decision results:", count.intValue(), start, end);
+        LOGGER.info("Decisions/s : {}", decFormat.format(count / nanoToS((double) end - start)));
+    }
+
+    /**
+     * Serves many synthetic tenants from one registry sharing the attribute and
+     * function contexts.
+     */
+    private static void runMultiTenantDemo() throws Exception {
+        var tenants = useTestRuns ? TEST_TENANTS : DEMO_TENANTS;
+        LOGGER.info("");
+        LOGGER.info("Demo Part 9: Serve {} tenants with their own policies from a tenant registry.", tenants);
+        new MultiTenantDemo(tenants, Math.min(tenants, 200), TENANT_MEMORY_BUDGET_BYTES).run();
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Compares a policy calling expensive pure functions in its where clause with
+     * and without memoization of the function results in the function context.
+     */
+    private static void runMemoizationDemo() throws Exception {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info(
+                "Demo Part 10: Perform a small benchmark for expensive pure functions with and without memoization.");
+        var folder = Files.createTempDirectory("sapl-memoization");
+        try {
+            for (var document : List.of("pdp.json", "policy_audit.sapl")) {
+                try (var in = EmbeddedPDPDemo.class.getResourceAsStream("/memoization/" + document)) {
+                    Files.copy(in, folder.resolve(document));
+                }
+            }
+            var attributeContext = new AnnotationAttributeContext();
+            attributeContext.loadPolicyInformationPoint(EchoPIP.class);
+            var interpreter     = new DefaultSAPLInterpreter();
+            var functionContext = new AnnotationFunctionContext();
+            functionContext.loadLibrary(SimpleFunctionLibrary.class);
+            var memoizingContext = new MemoizingFunctionContext(MEMOIZATION_SIZE, Set.of());
+            memoizingContext.loadLibrary(SimpleFunctionLibrary.class);
+            var pdp          = PolicyFolders.load(folder, "plain", attributeContext, functionContext, interpreter)
+                    .pdp();
+            var memoizingPdp = PolicyFolders
+                    .load(folder, "memoizing", attributeContext, memoizingContext, interpreter).pdp();
+            for (var measured : List.of(pdp, memoizingPdp)) {
+                var title = measured == pdp ? "without memoization" : "with memoization";
+                LOGGER.info("Measure time for {} runs {}...", runs, title);
+                long start = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    var resource = RESOURCE + i % AUDITED_RESOURCES;
+                    measured.decideOnce(AuthorizationSubscription.of(SUBJECT, "audit", resource)).block();
+                }
+                long end = System.nanoTime();
+                LOGGER.info("");
+                logResults("Benchmark results " + title + ":", runs, start, end);
+                measured.destroy();
+            }
+            LOGGER.info("Memoized results used: {}, functions called: {}", memoizingContext.getHits(),
+                    memoizingContext.getMisses());
+        } finally {
+            deleteFolder(folder);
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Waits until a new batch was applied and the PDP re-evaluated the open
+     * subscriptions, i.e., until no further decision was evaluated for one second.
+     */
+    private static void awaitReindex(DebouncedPolicyFolder sync, long batches) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (sync.getBatches() == batches && System.nanoTime() - deadline < 0) {
+            Thread.sleep(100);
+        }
+        var reevaluations = -1L;
+        while (reevaluations != sync.getReevaluations() && System.nanoTime() - deadline < 0) {
+            reevaluations = sync.getReevaluations();
+            Thread.sleep(1_000);
+        }
+    }
+
+    private static void deleteFolder(Path folder) throws IOException {
+        try (var files = Files.walk(folder)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Path policyFolder() {
+        return Path.of(path.replaceFirst("^~", Matcher.quoteReplacement(System.getProperty("user.home"))));
+    }
+
+    /*
+     * Scans the working copy the PDP loads its policies from, not the watched
+     * source folder, whose files may not have been applied yet.
+     */
+    private Set<String> policyAttributes() {
+        return filesystem ? PolicyAttributes.inFolder(pdpFolder) : PolicyAttributes.inResources("/policies");
+    }
+
     private static double nanoToMs(double nanoseconds) {
         return nanoseconds / MILLION;
     }
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.embedded.demo.BulkPolicyDecisionPoint.BulkDecision;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+/**
+ * Offline evaluation of a file of subscriptions, e.g., for compliance reports
+ * over all combinations of users and resources. The subscriptions are streamed
+ * from the input file through a {@link BulkPolicyDecisionPoint} on all cores
+ * and the decisions, including obligations and advice, are written to the
+ * output file through a buffered writer.
+ * <p>
+ * The policies are selected by the -f and -p options of the parent command.
+ */
+@Command(name = "evaluate", mixinStandardHelpOptions = true, description = "Evaluates all subscriptions of a JSON Lines (.jsonl) or CSV (.csv) file and writes the decisions to an output file. "
+        + "The output is JSON Lines, or CSV if the output file name ends with .csv.")
+class EvaluateCommand implements Callable<Integer> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EvaluateCommand.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int WRITE_BUFFER_CHARS = 1_048_576;
+
+    private static final String CSV_HEADER = "index,subject,action,resource,environment,"
+            + "decision,resource_decision,obligations,advice";
+
+    private static final DecimalFormat decFormat = new DecimalFormat("#.####");
+
+    @ParentCommand
+    EmbeddedPDPDemo demo;
+
+    @Parameters(index = "0", description = "The subscriptions, one per line.")
+    Path input;
+
+    @Option(names = { "-o", "--output" }, required = true, description = "The file the decisions are written to.")
+    Path output;
+
+    @Option(names = { "-m",
+            "--memory-mapped" }, description = "If set, the input file is memory-mapped instead of read through a buffered reader.")
+    boolean memoryMapped;
+
+    @Option(names = { "-u",
+            "--unordered" }, description = "If set, the decisions are written as they are made instead of in the order of the subscriptions.")
+    boolean unordered;
+
+    @Option(names = {
+            "--parallelism" }, description = "Number of parallel rails. Defaults to the number of available processors.")
+    int parallelism = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public Integer call() throws Exception {
+        var pdp = demo.staticPolicyDecisionPoint();
+        try (var writer = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(output), StandardCharsets.UTF_8), WRITE_BUFFER_CHARS)) {
+            var csv           = SubscriptionFiles.Format.of(output) == SubscriptionFiles.Format.CSV;
+            var subscriptions = SubscriptionFiles.read(input, SubscriptionFiles.Format.of(input), memoryMapped);
+            var bulkPdp       = new BulkPolicyDecisionPoint(pdp, parallelism, BulkPolicyDecisionPoint.DEFAULT_PREFETCH);
+            var decisions     = unordered ? bulkPdp.decideUnordered(subscriptions)
+                    : bulkPdp.decideOrdered(subscriptions);
+            if (csv) {
+                writer.write(CSV_HEADER);
+                writer.newLine();
+            }
+            LOGGER.info("Evaluating {} into {}...", input, output);
+            long start = System.nanoTime();
+            var  count = decisions.doOnNext(decision -> write(writer, decision, csv)).count().block();
+            writer.flush();
+            long end     = System.nanoTime();
+            var  seconds = (end - start) / 1_000_000_000.0D;
+            LOGGER.info("Wrote {} decisions in {} s ({} decisions/s).", count, decFormat.format(seconds),
+                    decFormat.format(count / seconds));
+        } finally {
+            pdp.destroy();
+        }
+        return 0;
+    }
+
+    private static void write(Writer writer, BulkDecision decision, boolean csv) {
+        try {
+            writer.write(csv ? toCsv(decision) : toJson(decision));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String toJson(BulkDecision decision) throws JsonProcessingException {
+        var line = JsonNodeFactory.instance.objectNode();
+        line.put("index", decision.index());
+        line.set("subscription", MAPPER.valueToTree(decision.subscription()));
+        line.set("decision", decisionNode(decision.decision()));
+        return MAPPER.writeValueAsString(line);
+    }
+
+    static String toCsv(BulkDecision decision) {
+        var subscription = decision.subscription();
+        var result       = decision.decision();
+        return String.join(",", Long.toString(decision.index()), csvValue(subscription.getSubject()),
+                csvValue(subscription.getAction()), csvValue(subscription.getResource()),
+                csvValue(subscription.getEnvironment()), result.getDecision().name(),
+                csvValue(result.getResource().orElse(null)), csvValue(result.getObligations().orElse(null)),
+                csvValue(result.getAdvice().orElse(null)));
+    }
+
+    private static ObjectNode decisionNode(AuthorizationDecision decision) {
+        var node = JsonNodeFactory.instance.objectNode();
+        node.put("decision", decision.getDecision().name());
+        decision.getResource().ifPresent(resource -> node.set("resource", resource));
+        decision.getObligations().ifPresent(obligations -> node.set("obligations", obligations));
+        decision.getAdvice().ifPresent(advice -> node.set("advice", advice));
+        return node;
+    }
+
+    /**
+     * Text values are written as they are, all other values as JSON. Values are
+     * quoted if necessary.
+     */
+    private static String csvValue(JsonNode value) {
+        if (value == null || value.isNull() || value.isMissingNode()) {
+            return "";
+        }
+        var text = value.isTextual() ? value.asText() : value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+}
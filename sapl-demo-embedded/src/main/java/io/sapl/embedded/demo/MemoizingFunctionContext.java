@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import io.sapl.api.functions.Function;
+import io.sapl.api.functions.FunctionLibrary;
+import io.sapl.api.interpreter.Val;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.interpreter.functions.AnnotationFunctionContext;
+
+/**
+ * A function context memoizing the results of pure functions. Policies often
+ * call the same functions with the same arguments in every evaluation, e.g.,
+ * to hash or normalize the subject. For functions marked with {@link Pure},
+ * or named explicitly, e.g., functions of libraries which cannot be annotated,
+ * the result is looked up by the function name and the values of the
+ * arguments before the function is called.
+ * <p>
+ * At most maximumSize results are held, the least recently used result is
+ * evicted first. Errors are never memoized, and calls with an error as an
+ * argument are always passed through.
+ */
+public class MemoizingFunctionContext extends AnnotationFunctionContext {
+
+    private final Set<String> pureFunctions;
+
+    private final Map<Key, Val> results;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private record Key(String function, List<JsonNode> arguments) {
+    }
+
+    /**
+     * @param maximumSize   maximum number of memoized results
+     * @param pureFunctions fully qualified names of pure functions in addition
+     *                      to the ones marked with {@link Pure} in the
+     *                      libraries loaded later
+     */
+    public MemoizingFunctionContext(int maximumSize, Set<String> pureFunctions) {
+        this.pureFunctions = new HashSet<>(pureFunctions);
+        this.results       = new LeastRecentlyUsedMap<>(maximumSize);
+    }
+
+    /**
+     * Registers the functions marked with {@link Pure} of the library as pure
+     * after loading it.
+     */
+    @Override
+    public void loadLibrary(Class<?> library) throws InitializationException {
+        super.loadLibrary(library);
+        pureFunctions.addAll(pureFunctionsOf(library));
+    }
+
+    /**
+     * @return the fully qualified names of the functions marked with
+     *         {@link Pure}
+     */
+    static Set<String> pureFunctionsOf(Class<?> library) {
+        var functions  = new HashSet<String>();
+        var annotation = library.getAnnotation(FunctionLibrary.class);
+        if (annotation == null) {
+            return functions;
+        }
+        for (var method : library.getMethods()) {
+            var function = method.getAnnotation(Function.class);
+            if (function != null && method.isAnnotationPresent(Pure.class)) {
+                var name = function.name().isEmpty() ? method.getName() : function.name();
+                functions.add(annotation.name() + "." + name);
+            }
+        }
+        return functions;
+    }
+
+    @Override
+    public Val evaluate(String function, Val... parameters) {
+        if (!pureFunctions.contains(function)) {
+            return super.evaluate(function, parameters);
+        }
+        var arguments = new ArrayList<JsonNode>(parameters.length);
+        for (var parameter : parameters) {
+            if (parameter.isError()) {
+                return super.evaluate(function, parameters);
+            }
+            arguments.add(parameter.isUndefined() ? MissingNode.getInstance() : parameter.get());
+        }
+        var key = new Key(function, arguments);
+        synchronized (results) {
+            var result = results.get(key);
+            if (result != null) {
+                hits.incrementAndGet();
+                return result;
+            }
+        }
+        misses.incrementAndGet();
+        var result = super.evaluate(function, parameters);
+        if (!result.isError()) {
+            synchronized (results) {
+                results.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+
+/**
+ * Serves many synthetic tenants, each with its own policy folder, from one
+ * {@link TenantPolicyDecisionPoints} registry. Reports the latency of the first
+ * request of each tenant, which loads its policies, the latency of subsequent
+ * requests, and the heap used. For comparison, the heap per tenant is also
+ * measured for a sample of tenants with one PDP per tenant created by the
+ * PolicyDecisionPointFactory.
+ */
+class MultiTenantDemo {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiTenantDemo.class);
+
+    private static final double MILLION = 1_000_000.0D;
+
+    private static final double[] PERCENTILES = { 50.0D, 90.0D, 99.0D };
+
+    private static final DecimalFormat decFormat = new DecimalFormat("#.####");
+
+    private final int tenantCount;
+
+    private final int comparisonSampleSize;
+
+    private final long memoryBudgetBytes;
+
+    MultiTenantDemo(int tenantCount, int comparisonSampleSize, long memoryBudgetBytes) {
+        this.tenantCount          = tenantCount;
+        this.comparisonSampleSize = comparisonSampleSize;
+        this.memoryBudgetBytes    = memoryBudgetBytes;
+    }
+
+    void run() throws IOException, InitializationException {
+        var root = Files.createTempDirectory("sapl-tenants");
+        try {
+            LOGGER.info("Generating {} tenant policy folders...", tenantCount);
+            for (int i = 0; i < tenantCount; i++) {
+                writeTenant(root, i);
+            }
+            runRegistry(root);
+            runPdpPerTenant(root);
+        } finally {
+            try (var files = Files.walk(root)) {
+                for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void runRegistry(Path root) throws InitializationException {
+        var heapBefore = usedHeap();
+        try (var registry = new TenantPolicyDecisionPoints(root, memoryBudgetBytes)) {
+            var firstRequest = new long[tenantCount];
+            for (int i = 0; i < tenantCount; i++) {
+                var start = System.nanoTime();
+                registry.decideOnce(tenantId(i), subscription(i)).block();
+                firstRequest[i] = System.nanoTime() - start;
+            }
+            var heapAfter = usedHeap();
+            var loaded    = registry.getLoadedTenants();
+            var warm      = new long[loaded];
+            for (int i = 0; i < loaded; i++) {
+                var tenant = tenantCount - loaded + i;
+                var start  = System.nanoTime();
+                registry.decideOnce(tenantId(tenant), subscription(tenant)).block();
+                warm[i] = System.nanoTime() - start;
+            }
+            LOGGER.info("");
+            LOGGER.info("Tenant registry with an estimated memory budget of {} MB:", memoryBudgetBytes / 1_048_576L);
+            LOGGER.info("Tenants loaded / evicted   : {} / {}", registry.getLoadedTenants(), registry.getEvictions());
+            LOGGER.info("Estimated heap of tenants  : {} MB", registry.getEstimatedBytes() / 1_048_576L);
+            LOGGER.info("Measured heap increase     : {} MB", (heapAfter - heapBefore) / 1_048_576L);
+            LOGGER.info("Heap per loaded tenant     : {} bytes",
+                    (heapAfter - heapBefore) / Math.max(1, registry.getLoadedTenants()));
+            logLatencies("First request (loads the tenant) ", firstRequest);
+            logLatencies("Subsequent request (tenant loaded)", warm);
+        }
+    }
+
+    private void runPdpPerTenant(Path root) throws InitializationException {
+        var heapBefore = usedHeap();
+        var pdps       = new EmbeddedPolicyDecisionPoint[comparisonSampleSize];
+        for (int i = 0; i < comparisonSampleSize; i++) {
+            pdps[i] = PolicyDecisionPointFactory.filesystemPolicyDecisionPoint(root.resolve(tenantId(i)).toString(),
+                    List::of, () -> List.of(EchoPIP.class), List::of, () -> List.of(SimpleFunctionLibrary.class));
+            pdps[i].decideOnce(subscription(i)).block();
+        }
+        var heapAfter = usedHeap();
+        LOGGER.info("");
+        LOGGER.info("One PDP per tenant from the PolicyDecisionPointFactory ({} tenants sampled):",
+                comparisonSampleSize);
+        LOGGER.info("Heap per tenant            : {} bytes", (heapAfter - heapBefore) / comparisonSampleSize);
+        for (var pdp : pdps) {
+            pdp.destroy();
+        }
+    }
+
+    private static void writeTenant(Path root, int tenant) throws IOException {
+        var folder = Files.createDirectories(root.resolve(tenantId(tenant)));
+        Files.writeString(folder.resolve(PolicySnapshot.PDP_CONFIGURATION),
+                "{ \"algorithm\": \"DENY_UNLESS_PERMIT\", \"variables\": {} }");
+        Files.writeString(folder.resolve("policy.sapl"), "policy \"read own records\" permit action == \"read\" "
+                + "where subject == \"user-" + tenant + "\"; resource =~ \"record-.+\";");
+    }
+
+    static String tenantId(int tenant) {
+        return String.format("tenant-%05d", tenant);
+    }
+
+    private static AuthorizationSubscription subscription(int tenant) {
+        return AuthorizationSubscription.of("user-" + tenant, "read", "record-" + tenant);
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void logLatencies(String title, long[] latencies) {
+        if (LOGGER.isInfoEnabled() && latencies.length > 0) {
+            var sorted = latencies.clone();
+            Arrays.sort(sorted);
+            var line = new StringBuilder(title).append(" ms:");
+            for (var p : PERCENTILES) {
+                line.append(" p").append(decFormat.format(p)).append(' ')
+                        .append(decFormat.format(ParallelPerformanceDemo.percentile(sorted, p) / MILLION));
+            }
+            line.append(" max ").append(decFormat.format(sorted[sorted.length - 1] / MILLION));
+            LOGGER.info(line.toString());
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Measures how the embedded PDP scales across cores. The same number of
+ * decisions is made with an increasing number of threads, either by blocking
+ * workers on a fixed thread pool, by blocking workers on virtual threads, or by
+ * non-blocking Flux.parallel() rails. Each run only ends after the last
+ * decision has been made.
+ * <p>
+ * The scaling efficiency relates the throughput with n threads to n times the
+ * throughput with one thread of the same mode. An efficiency of 1.0 means
+ * perfectly linear scaling.
+ */
+class ParallelPerformanceDemo {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelPerformanceDemo.class);
+
+    private static final double BILLION = 1_000_000_000.0D;
+
+    private static final double MILLION = 1_000_000.0D;
+
+    private static final double[] PERCENTILES = { 50.0D, 90.0D, 99.0D, 99.9D };
+
+    private static final DecimalFormat decFormat = new DecimalFormat("#.####");
+
+    private final PolicyDecisionPoint pdp;
+
+    private final AuthorizationSubscription subscription;
+
+    private final int runs;
+
+    ParallelPerformanceDemo(PolicyDecisionPoint pdp, AuthorizationSubscription subscription, int runs) {
+        this.pdp          = pdp;
+        this.subscription = subscription;
+        this.runs         = runs;
+    }
+
+    private enum Mode {
+        FIXED_THREAD_POOL("fixed thread pool"), VIRTUAL_THREADS("virtual threads"),
+        PARALLEL_RAILS("Flux.parallel() rails");
+
+        private final String description;
+
+        Mode(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * The result of one run: the wall clock time for all decisions and the
+     * latency of each decision in nanoseconds.
+     */
+    private record RunResult(long elapsedNanos, long[] latencies) {
+    }
+
+    void run() throws InterruptedException {
+        var threadCounts = threadCounts(Runtime.getRuntime().availableProcessors());
+        for (var mode : Mode.values()) {
+            if (mode == Mode.VIRTUAL_THREADS && !virtualThreadsAvailable()) {
+                LOGGER.info("Virtual threads are not available on this JVM (Java 21 or newer required), skipping.");
+                continue;
+            }
+            LOGGER.info("");
+            LOGGER.info("Warming up {} for {} runs...", mode.description, runs);
+            measure(mode, threadCounts.get(threadCounts.size() - 1));
+            LOGGER.info("Benchmark results for {} ({} runs each):", mode.description, runs);
+            LOGGER.info("threads | decisions/s | efficiency | p50 ms | p90 ms | p99 ms | p99.9 ms | max ms");
+            var singleThreadThroughput = 0.0D;
+            for (var threads : threadCounts) {
+                var result     = measure(mode, threads);
+                var throughput = runs / (result.elapsedNanos() / BILLION);
+                if (threads == 1) {
+                    singleThreadThroughput = throughput;
+                }
+                logResult(threads, throughput, throughput / (threads * singleThreadThroughput), result.latencies());
+            }
+        }
+    }
+
+    /**
+     * @return 1, 2, 4, ... up to and including the number of available processors
+     */
+    static List<Integer> threadCounts(int availableProcessors) {
+        var threadCounts = new ArrayList<Integer>();
+        for (int threads = 1; threads < availableProcessors; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(availableProcessors);
+        return threadCounts;
+    }
+
+    private RunResult measure(Mode mode, int threads) throws InterruptedException {
+        return switch (mode) {
+        case FIXED_THREAD_POOL -> measureBlockingWorkers(Executors.newFixedThreadPool(threads), threads);
+        case VIRTUAL_THREADS -> measureBlockingWorkers(newVirtualThreadPerTaskExecutor(), threads);
+        case PARALLEL_RAILS -> measureParallelRails(threads);
+        };
+    }
+
+    /**
+     * Starts the given number of workers, each blocking on one decision at a time
+     * until all runs are taken. The run ends when all workers have terminated.
+     */
+    private RunResult measureBlockingWorkers(ExecutorService executor, int workers) throws InterruptedException {
+        var latencies = new long[runs];
+        var nextRun   = new AtomicInteger();
+        var tasks     = new ArrayList<Callable<Void>>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(() -> {
+                for (int run = nextRun.getAndIncrement(); run < runs; run = nextRun.getAndIncrement()) {
+                    var start = System.nanoTime();
+                    pdp.decide(subscription).blockFirst();
+                    latencies[run] = System.nanoTime() - start;
+                }
+                return null;
+            });
+        }
+        try {
+            var start = System.nanoTime();
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            return new RunResult(System.nanoTime() - start, latencies);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Decision failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Distributes the runs over the given number of rails, each making one
+     * non-blocking decision after the other. The run ends when all rails have
+     * completed.
+     */
+    private RunResult measureParallelRails(int rails) {
+        var latencies = new long[runs];
+        var scheduler = Schedulers.newParallel("decision-rail", rails);
+        try {
+            var start = System.nanoTime();
+            Flux.range(0, runs).parallel(rails).runOn(scheduler).concatMap(run -> timedDecision(latencies, run))
+                    .then().block();
+            return new RunResult(System.nanoTime() - start, latencies);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    private Flux<Long> timedDecision(long[] latencies, int run) {
+        return Flux.defer(() -> {
+            var start = System.nanoTime();
+            return pdp.decide(subscription).take(1).map(decision -> latencies[run] = System.nanoTime() - start);
+        });
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        var executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Virtual threads are a preview feature before Java 21. They are looked up
+     * reflectively, so the demo still runs on Java 17.
+     *
+     * @return an executor starting a virtual thread per task, or null if not
+     *         available
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values.
+     */
+    static long percentile(long[] sortedValues, double percentile) {
+        var rank = (int) Math.ceil(percentile / 100.0D * sortedValues.length);
+        return sortedValues[Math.max(0, Math.min(sortedValues.length, rank) - 1)];
+    }
+
+    private static void logResult(int threads, double throughput, double efficiency, long[] latencies) {
+        if (LOGGER.isInfoEnabled()) {
+            var sorted = latencies.clone();
+            Arrays.sort(sorted);
+            var line = new StringBuilder(String.format("%7d | %11.0f | %10.2f", threads, throughput, efficiency));
+            for (var p : PERCENTILES) {
+                line.append(" | ").append(decFormat.format(percentile(sorted, p) / MILLION));
+            }
+            line.append(" | ").append(decFormat.format(sorted[sorted.length - 1] / MILLION));
+            LOGGER.info(line.toString());
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the attributes, e.g., {@code <time.now>} or {@code subject.<echo.echo>},
+ * referenced by the SAPL documents of a policy folder. The documents are only
+ * scanned textually, so an expression like {@code a < b.c > d} may be reported
+ * as attribute as well. For deciding whether decisions may be cached, such
+ * false positives are on the safe side.
+ */
+class PolicyAttributes {
+
+    private static final Pattern ATTRIBUTE_FINDER = Pattern
+            .compile("<\\s*([A-Za-z_]\\w*(?:\\.[A-Za-z_]\\w*)+)\\s*[(\\[>]");
+
+    private PolicyAttributes() {
+        // Utility class with only static methods. Cannot instantiate.
+    }
+
+    static Set<String> inDocument(String document) {
+        var attributes = new HashSet<String>();
+        var matcher    = ATTRIBUTE_FINDER.matcher(document);
+        while (matcher.find()) {
+            attributes.add(matcher.group(1));
+        }
+        return attributes;
+    }
+
+    static Set<String> inFolder(Path folder) {
+        var attributes = new HashSet<String>();
+        try (var files = Files.list(folder)) {
+            for (var file : files.filter(file -> file.toString().endsWith(".sapl")).toList()) {
+                attributes.addAll(inDocument(Files.readString(file, StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to scan policies in " + folder, e);
+        }
+        return attributes;
+    }
+
+    /**
+     * Scans a policy folder bundled with the application, i.e., in a folder of
+     * the class path or inside of the application JAR.
+     */
+    static Set<String> inResources(String resourceFolder) {
+        var folder = resourceFolder.startsWith("/") ? resourceFolder.substring(1) : resourceFolder;
+        var url    = PolicyAttributes.class.getClassLoader().getResource(folder);
+        if (url == null) {
+            throw new IllegalArgumentException("Policy folder not found in resources: " + resourceFolder);
+        }
+        try {
+            var uri = url.toURI();
+            if (!"jar".equals(uri.getScheme())) {
+                return inFolder(Path.of(uri));
+            }
+            try (var jar = FileSystems.newFileSystem(uri, Map.of())) {
+                return inFolder(jar.getPath(folder));
+            } catch (FileSystemAlreadyExistsException e) {
+                return inFolder(FileSystems.getFileSystem(uri).getPath(folder));
+            }
+        } catch (URISyntaxException | IOException e) {
+            throw new IllegalArgumentException("Unable to scan policies in resources: " + resourceFolder, e);
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.api.pdp.TracedDecision;
+import io.sapl.interpreter.SAPLInterpreter;
+import io.sapl.interpreter.combinators.PolicyDocumentCombiningAlgorithm;
+import io.sapl.interpreter.functions.FunctionContext;
+import io.sapl.interpreter.pip.AttributeContext;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.config.PDPConfiguration;
+import io.sapl.prp.Document;
+import io.sapl.prp.PolicyRetrievalPoint;
+import io.sapl.prp.PrpUpdateEvent;
+import io.sapl.prp.index.canonical.CanonicalImmutableParsedDocumentIndex;
+import reactor.core.publisher.Flux;
+
+/**
+ * Creates embedded PDPs from a policy folder with given attribute and function
+ * contexts. In contrast to the PolicyDecisionPointFactory, the contexts can be
+ * shared between PDPs or customized, and the folder is read once and not
+ * watched.
+ */
+final class PolicyFolders {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private PolicyFolders() {
+    }
+
+    /**
+     * A PDP and the total size of the policy sources it was created from.
+     */
+    record LoadedPolicies(EmbeddedPolicyDecisionPoint pdp, long sourceBytes) {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a policy cannot be parsed
+     */
+    static LoadedPolicies load(Path folder, String configurationId, AttributeContext attributeContext,
+            FunctionContext functionContext, SAPLInterpreter interpreter) throws IOException {
+        JsonNode pdpConfiguration = null;
+
+        var documents   = new ArrayList<Document>();
+        var sourceBytes = 0L;
+        try (var files = Files.list(folder)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                if (name.endsWith(".sapl")) {
+                    var source   = Files.readString(file, StandardCharsets.UTF_8);
+                    var document = interpreter.parseDocument(source);
+                    if (document.isInvalid()) {
+                        throw new IllegalArgumentException("Invalid policy " + file);
+                    }
+                    documents.add(document);
+                    sourceBytes += source.length();
+                } else if (PolicySnapshot.PDP_CONFIGURATION.equals(name)) {
+                    pdpConfiguration = MAPPER.readTree(file.toFile());
+                }
+            }
+        }
+        var configuration = configuration(configurationId, attributeContext, functionContext, documents,
+                pdpConfiguration, UnaryOperator.identity());
+        return new LoadedPolicies(new EmbeddedPolicyDecisionPoint(() -> Flux.just(configuration)), sourceBytes);
+    }
+
+    /**
+     * Creates a PDP from the documents of a snapshot. The SAPL documents are
+     * parsed again, but the policy folder is neither listed nor read.
+     *
+     * @throws IllegalArgumentException if a policy or the pdp.json cannot be
+     *                                  parsed
+     */
+    static LoadedPolicies fromSnapshot(PolicySnapshot snapshot, String configurationId,
+            AttributeContext attributeContext, FunctionContext functionContext, SAPLInterpreter interpreter) {
+        JsonNode pdpConfiguration = null;
+
+        var documents   = new ArrayList<Document>();
+        var sourceBytes = 0L;
+        for (var source : snapshot.documents().entrySet()) {
+            if (PolicySnapshot.PDP_CONFIGURATION.equals(source.getKey())) {
+                pdpConfiguration = parseConfiguration(source.getValue());
+                continue;
+            }
+            var document = interpreter.parseDocument(source.getValue());
+            if (document.isInvalid()) {
+                throw new IllegalArgumentException("Invalid policy " + source.getKey() + " in snapshot");
+            }
+            documents.add(document);
+            sourceBytes += source.getValue().length();
+        }
+        var configuration = configuration(configurationId, attributeContext, functionContext, documents,
+                pdpConfiguration, UnaryOperator.identity());
+        return new LoadedPolicies(new EmbeddedPolicyDecisionPoint(() -> Flux.just(configuration)), sourceBytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the pdp.json is no valid JSON
+     */
+    static JsonNode parseConfiguration(String pdpConfiguration) {
+        try {
+            return MAPPER.readTree(pdpConfiguration);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid " + PolicySnapshot.PDP_CONFIGURATION, e);
+        }
+    }
+
+    /**
+     * Creates a configuration for the documents with the algorithm and variables
+     * of the pdp.json.
+     *
+     * @param pdpConfiguration the content of the pdp.json, or null for the
+     *                         defaults
+     */
+    static PDPConfiguration configuration(String configurationId, AttributeContext attributeContext,
+            FunctionContext functionContext, List<Document> documents, JsonNode pdpConfiguration,
+            UnaryOperator<TracedDecision> decisionInterceptor) {
+        var algorithm = PolicyDocumentCombiningAlgorithm.DENY_OVERRIDES;
+        var variables = new HashMap<String, Val>();
+        if (pdpConfiguration != null) {
+            if (pdpConfiguration.has("algorithm")) {
+                algorithm = PolicyDocumentCombiningAlgorithm.valueOf(pdpConfiguration.get("algorithm").asText());
+            }
+            pdpConfiguration.path("variables").fields()
+                    .forEachRemaining(variable -> variables.put(variable.getKey(), Val.of(variable.getValue())));
+        }
+        return new PDPConfiguration(configurationId, attributeContext, functionContext, Map.copyOf(variables),
+                algorithm, decisionInterceptor, UnaryOperator.identity(),
+                indexedPolicyRetrievalPoint(attributeContext, functionContext, documents));
+    }
+
+    /**
+     * Builds SAPL's canonical index over the documents in one update event, so
+     * the targets are not evaluated one by one for each decision.
+     */
+    private static PolicyRetrievalPoint indexedPolicyRetrievalPoint(AttributeContext attributeContext,
+            FunctionContext functionContext, List<Document> documents) {
+        var updates = documents.stream()
+                .map(document -> new PrpUpdateEvent.Update(PrpUpdateEvent.Type.PUBLISH, document)).toList();
+        return new CanonicalImmutableParsedDocumentIndex(attributeContext, functionContext)
+                .apply(new PrpUpdateEvent(updates));
+    }
+
+}
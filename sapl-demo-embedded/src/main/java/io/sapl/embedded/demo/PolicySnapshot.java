@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+
+/**
+ * A compact binary snapshot of a validated policy folder, i.e., of its SAPL
+ * documents and the pdp.json. The snapshot is created at build time by
+ * {@link PolicySnapshotTool}, so syntax errors fail the build instead of the
+ * PDP startup. The snapshot holds the sources, not parsed documents, as the
+ * embedded PDP offers no API to load parsed documents. A PDP created from it
+ * with {@link PolicyFolders#fromSnapshot} does not list and read the policy
+ * folder, but still parses every document.
+ * <p>
+ * Format (GZIP compressed): the magic "SAPLSNAP", the format version, the
+ * SHA-256 checksum of all documents, the number of documents, and for each
+ * document its file name and UTF-8 content. The checksum covers the file names
+ * and contents in name order. It is computed from the snapshot content itself,
+ * so it only detects damaged or truncated snapshots. It does not detect a
+ * snapshot which is out of date with the policy sources.
+ */
+class PolicySnapshot {
+
+    static final String PDP_CONFIGURATION = "pdp.json";
+
+    static final String RESOURCE = "/policies.snapshot";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PolicySnapshot.class);
+
+    private static final byte[] MAGIC = "SAPLSNAP".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private final Map<String, String> documents;
+
+    private final byte[] checksum;
+
+    private PolicySnapshot(Map<String, String> documents) {
+        this.documents = documents;
+        this.checksum  = checksum(documents);
+    }
+
+    /**
+     * Reads all SAPL documents and the pdp.json of a folder. Each SAPL document is
+     * parsed once to validate it.
+     *
+     * @throws IllegalArgumentException if a document cannot be parsed
+     */
+    static PolicySnapshot fromFolder(Path folder) throws IOException {
+        var interpreter = new DefaultSAPLInterpreter();
+        var documents   = new TreeMap<String, String>();
+        try (var files = Files.list(folder)) {
+            for (var file : files.sorted().toList()) {
+                var name = file.getFileName().toString();
+                if (name.endsWith(".sapl") || PDP_CONFIGURATION.equals(name)) {
+                    var content = Files.readString(file, StandardCharsets.UTF_8);
+                    if (name.endsWith(".sapl")) {
+                        validate(interpreter, name, content);
+                    }
+                    documents.put(name, content);
+                }
+            }
+        }
+        return new PolicySnapshot(documents);
+    }
+
+    private static void validate(DefaultSAPLInterpreter interpreter, String name, String content) {
+        try {
+            interpreter.parse(content);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid SAPL document " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        try (var out = new DataOutputStream(new GZIPOutputStream(outputStream))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.write(checksum);
+            out.writeInt(documents.size());
+            for (var document : documents.entrySet()) {
+                var content = document.getValue().getBytes(StandardCharsets.UTF_8);
+                out.writeUTF(document.getKey());
+                out.writeInt(content.length);
+                out.write(content);
+            }
+        }
+    }
+
+    /**
+     * @throws IOException if the snapshot is damaged or of an unknown format
+     */
+    static PolicySnapshot readFrom(InputStream inputStream) throws IOException {
+        try (var in = new DataInputStream(new GZIPInputStream(inputStream))) {
+            var magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException("Not a policy snapshot");
+            }
+            var version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported policy snapshot version " + version);
+            }
+            var expectedChecksum = in.readNBytes(32);
+            var count            = readLength(in);
+            var documents        = new TreeMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                var name    = in.readUTF();
+                var content = in.readNBytes(readLength(in));
+                documents.put(name, new String(content, StandardCharsets.UTF_8));
+            }
+            var snapshot = new PolicySnapshot(documents);
+            if (!Arrays.equals(expectedChecksum, snapshot.checksum)) {
+                throw new IOException("Policy snapshot checksum mismatch");
+            }
+            return snapshot;
+        }
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Damaged policy snapshot");
+        }
+        return length;
+    }
+
+    /**
+     * Reads the snapshot bundled with the application.
+     *
+     * @return the snapshot, or empty if it is missing or damaged
+     */
+    static Optional<PolicySnapshot> fromResource(String resource) {
+        try (var inputStream = PolicySnapshot.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                LOGGER.info("No policy snapshot {} found.", resource);
+                return Optional.empty();
+            }
+            return Optional.of(readFrom(inputStream));
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring policy snapshot {}: {}", resource, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the documents to a folder, from which a filesystem PDP can be
+     * created.
+     */
+    void extractTo(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        for (var document : documents.entrySet()) {
+            Files.writeString(folder.resolve(document.getKey()), document.getValue(), StandardCharsets.UTF_8);
+        }
+    }
+
+    boolean matches(PolicySnapshot other) {
+        return Arrays.equals(checksum, other.checksum);
+    }
+
+    /**
+     * @return the contents of the documents by file name
+     */
+    Map<String, String> documents() {
+        return Collections.unmodifiableMap(documents);
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    private static byte[] checksum(Map<String, String> documents) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var document : documents.entrySet()) {
+                digest.update(document.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(document.getValue().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Build-time tool creating the policy snapshot. It is run by the
+ * exec-maven-plugin in the process-classes phase:
+ *
+ * <pre>
+ * PolicySnapshotTool &lt;policy folder&gt; &lt;snapshot file&gt;
+ * </pre>
+ *
+ * An invalid SAPL document fails the build.
+ */
+public final class PolicySnapshotTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PolicySnapshotTool.class);
+
+    private PolicySnapshotTool() {
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: PolicySnapshotTool <policy folder> <snapshot file>");
+        }
+        var snapshot = PolicySnapshot.fromFolder(Path.of(args[0]));
+        var target   = Path.of(args[1]);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (var out = Files.newOutputStream(target)) {
+            snapshot.writeTo(out);
+        }
+        LOGGER.info("Wrote {} documents from {} to {} ({} bytes).", snapshot.size(), args[0], target,
+                Files.size(target));
+    }
+
+}
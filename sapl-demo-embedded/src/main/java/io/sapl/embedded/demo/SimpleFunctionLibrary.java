@@ -15,6 +15,11 @@
  */
 package io.sapl.embedded.demo;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 import io.sapl.api.functions.Function;
 import io.sapl.api.functions.FunctionLibrary;
 import io.sapl.api.interpreter.PolicyEvaluationException;
@@ -29,6 +34,7 @@ private SimpleFunctionLibrary() {
         // Utility class with only static methods. Cannot instantiate.
     }
 
+    @Pure
     @Function
     public static Val length(Val parameter) {
         if (parameter.isArray()) {
@@ -41,6 +47,7 @@ public static Val length(Val parameter) {
         }
     }
 
+    @Pure
     @Function
     public static Val append(@Text @Number Val... parameters) {
         var builder = new StringBuilder();
@@ -54,4 +61,23 @@ public static Val append(@Text @Number Val... parameters) {
         return Val.of(builder.toString());
     }
 
+    /**
+     * A deliberately expensive function: the hex encoded SHA-256 hash of the
+     * text, hashed again for the given number of rounds.
+     */
+    @Pure
+    @Function
+    public static Val digest(@Text Val text, @Number Val rounds) {
+        try {
+            var sha256 = MessageDigest.getInstance("SHA-256");
+            var hash   = text.get().asText().getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < rounds.get().asInt(); i++) {
+                hash = sha256.digest(hash);
+            }
+            return Val.of(HexFormat.of().formatHex(hash));
+        } catch (NoSuchAlgorithmException e) {
+            return Val.error("SHA-256 not available");
+        }
+    }
+
 }
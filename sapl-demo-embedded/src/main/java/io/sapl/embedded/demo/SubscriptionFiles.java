@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reads authorization subscriptions from files lazily, so files larger than the
+ * heap can be processed.
+ * <p>
+ * A file is either read through a buffered reader, or memory-mapped in windows
+ * of 64 MB. Memory mapping avoids copying the file content into the heap
+ * through a buffer, which pays off for large files on a local disk.
+ */
+final class SubscriptionFiles {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int MAPPED_WINDOW_BYTES = 64 * 1_048_576;
+
+    private static final List<String> FIELDS = List.of("subject", "action", "resource", "environment");
+
+    enum Format {
+        /**
+         * One JSON subscription object per line.
+         */
+        JSONL,
+        /**
+         * A header line naming the columns subject, action, resource and optionally
+         * environment, followed by one subscription per line. Values starting with {
+         * or [ are parsed as JSON, all other values are text.
+         */
+        CSV;
+
+        static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSONL;
+        }
+    }
+
+    private SubscriptionFiles() {
+    }
+
+    /**
+     * Reads a JSON Lines file with one subscription object per line, i.e., with
+     * the keys subject, action, resource and optionally environment. Blank lines
+     * are skipped.
+     */
+    static Flux<AuthorizationSubscription> readJsonLines(Path file) {
+        return read(file, Format.JSONL, false);
+    }
+
+    static Flux<AuthorizationSubscription> read(Path file, Format format, boolean memoryMapped) {
+        var lines = (memoryMapped ? mappedLines(file) : bufferedLines(file)).filter(line -> !line.isBlank());
+        if (format == Format.JSONL) {
+            return lines.map(SubscriptionFiles::parseJson);
+        }
+        return lines.switchOnFirst((first, all) -> {
+            var header = first.hasValue() ? parseCsvLine(first.get()) : List.<String>of();
+            for (var column : header) {
+                if (!FIELDS.contains(column)) {
+                    return Flux.error(new IllegalArgumentException("Unknown CSV column: " + column));
+                }
+            }
+            return all.skip(1).map(line -> parseCsv(header, line));
+        });
+    }
+
+    static AuthorizationSubscription parseJson(String line) {
+        try {
+            return MAPPER.readValue(line, AuthorizationSubscription.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid subscription: " + line, e);
+        }
+    }
+
+    static AuthorizationSubscription parseCsv(List<String> header, String line) {
+        var values = parseCsvLine(line);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " columns: " + line);
+        }
+        var subscription = JsonNodeFactory.instance.objectNode();
+        for (int i = 0; i < header.size(); i++) {
+            subscription.set(header.get(i), csvValue(values.get(i)));
+        }
+        try {
+            return MAPPER.treeToValue(subscription, AuthorizationSubscription.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid subscription: " + line, e);
+        }
+    }
+
+    private static JsonNode csvValue(String value) {
+        if (value.startsWith("{") || value.startsWith("[")) {
+            try {
+                return MAPPER.readTree(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid JSON value: " + value, e);
+            }
+        }
+        return JsonNodeFactory.instance.textNode(value);
+    }
+
+    /**
+     * Splits a CSV line (RFC 4180). Values may be quoted, a quote within a quoted
+     * value is escaped by doubling it. Values must not contain line breaks.
+     */
+    static List<String> parseCsvLine(String line) {
+        var values = new ArrayList<String>();
+        var value  = new StringBuilder();
+        var quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static Flux<String> bufferedLines(Path file) {
+        return Flux.using(() -> Files.lines(file, StandardCharsets.UTF_8), Flux::fromStream, Stream::close);
+    }
+
+    private static Flux<String> mappedLines(Path file) {
+        return Flux.using(() -> FileChannel.open(file, StandardOpenOption.READ),
+                channel -> Flux.generate(() -> new MappedLineReader(channel), (reader, sink) -> {
+                    try {
+                        var line = reader.next();
+                        if (line == null) {
+                            sink.complete();
+                        } else {
+                            sink.next(line);
+                        }
+                    } catch (IOException e) {
+                        sink.error(new UncheckedIOException("Unable to read " + file, e));
+                    }
+                    return reader;
+                }), channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Reads lines from a file channel through memory-mapped windows. A window
+     * starts at the beginning of a line, so no line spans two windows unless it
+     * is longer than a window.
+     */
+    private static class MappedLineReader {
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private long position;
+
+        private long windowStart;
+
+        private MappedByteBuffer window;
+
+        MappedLineReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size    = channel.size();
+        }
+
+        String next() throws IOException {
+            while (position < size) {
+                if (window == null || position >= windowStart + window.capacity()) {
+                    map();
+                }
+                var offset = (int) (position - windowStart);
+                for (int i = offset; i < window.capacity(); i++) {
+                    if (window.get(i) == '\n') {
+                        position = windowStart + i + 1;
+                        return decode(offset, i);
+                    }
+                }
+                if (windowStart + window.capacity() >= size) {
+                    position = size;
+                    return decode(offset, window.capacity());
+                }
+                if (offset == 0) {
+                    throw new IOException("Line at byte " + position + " exceeds " + MAPPED_WINDOW_BYTES + " bytes");
+                }
+                map();
+            }
+            return null;
+        }
+
+        private void map() throws IOException {
+            windowStart = position;
+            window      = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPED_WINDOW_BYTES, size - position));
+        }
+
+        private String decode(int from, int to) {
+            var end   = to > from && window.get(to - 1) == '\r' ? to - 1 : to;
+            var bytes = new byte[end - from];
+            window.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
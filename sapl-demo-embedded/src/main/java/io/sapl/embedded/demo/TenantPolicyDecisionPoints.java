@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.functions.FilterFunctionLibrary;
+import io.sapl.functions.StandardFunctionLibrary;
+import io.sapl.functions.TemporalFunctionLibrary;
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.interpreter.SAPLInterpreter;
+import io.sapl.interpreter.functions.AnnotationFunctionContext;
+import io.sapl.interpreter.pip.AnnotationAttributeContext;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A registry of embedded PDPs for many tenants, each with its own policy
+ * folder below a common root folder.
+ * <p>
+ * Creating a PDP per tenant with the PolicyDecisionPointFactory creates a new
+ * attribute context and function context per tenant, i.e., loads and
+ * introspects all PIPs and function libraries again. Here, all tenants share
+ * one attribute context and one function context. Only the parsed policies,
+ * the variables, and the combining algorithm of the pdp.json are held per
+ * tenant.
+ * <p>
+ * The policies of a tenant are loaded on the first request for this tenant.
+ * The registry estimates the heap used by each tenant from the size of its
+ * policy sources. If the estimate for all loaded tenants exceeds the memory
+ * budget, the least recently used tenants without decisions in progress, i.e.,
+ * without pending decideOnce() calls or open decide() streams, are evicted.
+ * They are loaded again on their next request.
+ * <p>
+ * The policies of a tenant are not watched. Evict a tenant with
+ * {@link #evict(String)} to load changed policies.
+ */
+public class TenantPolicyDecisionPoints implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TenantPolicyDecisionPoints.class);
+
+    /**
+     * Rough factor between the size of a policy source and the heap used by its
+     * parsed syntax tree.
+     */
+    static final long ESTIMATED_HEAP_BYTES_PER_SOURCE_BYTE = 40L;
+
+    /**
+     * Heap of an empty tenant, i.e., its PDP and configuration.
+     */
+    static final long ESTIMATED_HEAP_BYTES_PER_TENANT = 4_096L;
+
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path root;
+
+    private final long memoryBudgetBytes;
+
+    private final AnnotationAttributeContext attributeContext;
+
+    private final AnnotationFunctionContext functionContext;
+
+    private final SAPLInterpreter interpreter = new DefaultSAPLInterpreter();
+
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>(16, 0.75F, true);
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private long estimatedBytes;
+
+    private int retiredTenants;
+
+    /**
+     * The pins and the evicted flag are guarded by the lock on the tenants map.
+     */
+    private static class Tenant {
+
+        private final EmbeddedPolicyDecisionPoint pdp;
+
+        private final long estimatedBytes;
+
+        private int pins;
+
+        private boolean evicted;
+
+        Tenant(EmbeddedPolicyDecisionPoint pdp, long estimatedBytes) {
+            this.pdp            = pdp;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    /**
+     * @param root              folder containing one policy folder per tenant,
+     *                          named after the tenant
+     * @param memoryBudgetBytes budget for the estimated heap of all loaded
+     *                          tenants
+     */
+    public TenantPolicyDecisionPoints(Path root, long memoryBudgetBytes) throws InitializationException {
+        this.root              = root;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.attributeContext  = new AnnotationAttributeContext();
+        this.attributeContext.loadPolicyInformationPoint(EchoPIP.class);
+        this.functionContext = new AnnotationFunctionContext();
+        this.functionContext.loadLibrary(FilterFunctionLibrary.class);
+        this.functionContext.loadLibrary(StandardFunctionLibrary.class);
+        this.functionContext.loadLibrary(TemporalFunctionLibrary.class);
+        this.functionContext.loadLibrary(SimpleFunctionLibrary.class);
+    }
+
+    /**
+     * A tenant is not destroyed while the decision is pending.
+     */
+    public Mono<AuthorizationDecision> decideOnce(String tenantId, AuthorizationSubscription authzSubscription) {
+        return Mono.defer(() -> {
+            var tenant = pin(tenantId);
+            return tenant.pdp.decideOnce(authzSubscription).doFinally(signal -> unpin(tenant));
+        });
+    }
+
+    /**
+     * A tenant is not destroyed while it has open decide() streams.
+     */
+    public Flux<AuthorizationDecision> decide(String tenantId, AuthorizationSubscription authzSubscription) {
+        return Flux.defer(() -> {
+            var tenant = pin(tenantId);
+            return tenant.pdp.decide(authzSubscription).doFinally(signal -> unpin(tenant));
+        });
+    }
+
+    /**
+     * Returns the tenant, loading it if necessary. The tenant is pinned within the
+     * same lock as the lookup, so it cannot be evicted and destroyed between the
+     * lookup and the decision. Each pin must be released with
+     * {@link #unpin(Tenant)}.
+     */
+    private Tenant pin(String tenantId) {
+        if (!TENANT_ID.matcher(tenantId).matches()) {
+            throw new IllegalArgumentException("Invalid tenant id: " + tenantId);
+        }
+        synchronized (tenants) {
+            var tenant = tenants.get(tenantId);
+            if (tenant != null) {
+                tenant.pins++;
+                return tenant;
+            }
+        }
+        // loading happens outside the lock, concurrent first requests of one tenant
+        // may load it twice, the second instance is discarded
+        var loaded = load(tenantId);
+        synchronized (tenants) {
+            var tenant = tenants.putIfAbsent(tenantId, loaded);
+            if (tenant != null) {
+                loaded.pdp.destroy();
+                tenant.pins++;
+                return tenant;
+            }
+            loaded.pins++;
+            estimatedBytes += loaded.estimatedBytes;
+            evictIdleTenants();
+            return loaded;
+        }
+    }
+
+    /**
+     * Releases a pin. An evicted tenant is destroyed with its last pin.
+     */
+    private void unpin(Tenant tenant) {
+        synchronized (tenants) {
+            tenant.pins--;
+            if (tenant.pins == 0 && tenant.evicted) {
+                tenant.pdp.destroy();
+                retiredTenants--;
+            }
+        }
+    }
+
+    private Tenant load(String tenantId) {
+        var folder = root.resolve(tenantId);
+        if (!Files.isDirectory(folder)) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenantId);
+        }
+        try {
+            var loaded = PolicyFolders.load(folder, tenantId, attributeContext, functionContext, interpreter);
+            loads.incrementAndGet();
+            return new Tenant(loaded.pdp(),
+                    ESTIMATED_HEAP_BYTES_PER_TENANT + loaded.sourceBytes() * ESTIMATED_HEAP_BYTES_PER_SOURCE_BYTE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load policies of tenant " + tenantId, e);
+        }
+    }
+
+    /**
+     * Evicts the least recently used tenants without pins until the estimate is
+     * within the budget. The tenant just loaded is pinned and thus kept.
+     */
+    private void evictIdleTenants() {
+        var iterator = tenants.entrySet().iterator();
+        while (estimatedBytes > memoryBudgetBytes && iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getValue().pins == 0) {
+                iterator.remove();
+                estimatedBytes -= entry.getValue().estimatedBytes;
+                entry.getValue().pdp.destroy();
+                evictions.incrementAndGet();
+            }
+        }
+        if (estimatedBytes > memoryBudgetBytes) {
+            LOGGER.warn("Tenants with decisions in progress exceed the memory budget of {} bytes",
+                    memoryBudgetBytes);
+        }
+    }
+
+    /**
+     * Removes a tenant, so its next request loads its policies again. If the
+     * tenant has decisions in progress, its PDP is destroyed after the last of
+     * them finished.
+     */
+    public void evict(String tenantId) {
+        synchronized (tenants) {
+            var tenant = tenants.remove(tenantId);
+            if (tenant != null) {
+                estimatedBytes -= tenant.estimatedBytes;
+                evictions.incrementAndGet();
+                if (tenant.pins == 0) {
+                    tenant.pdp.destroy();
+                } else {
+                    tenant.evicted = true;
+                    retiredTenants++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (tenants) {
+            tenants.values().forEach(tenant -> tenant.pdp.destroy());
+            tenants.clear();
+            estimatedBytes = 0L;
+        }
+    }
+
+    public int getLoadedTenants() {
+        synchronized (tenants) {
+            return tenants.size();
+        }
+    }
+
+    /**
+     * @return the number of evicted tenants whose PDP is kept until their
+     *         decisions in progress finished
+     */
+    public int getRetiredTenants() {
+        synchronized (tenants) {
+            return retiredTenants;
+        }
+    }
+
+    public long getEstimatedBytes() {
+        synchronized (tenants) {
+            return estimatedBytes;
+        }
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+import reactor.core.publisher.Flux;
+
+class BulkPolicyDecisionPointTests {
+
+    private EmbeddedPolicyDecisionPoint pdp;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pdp = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint(List::of, () -> List.of(EchoPIP.class),
+                List::of, () -> List.of(SimpleFunctionLibrary.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pdp.destroy();
+    }
+
+    @Test
+    void orderedDecisionsFollowTheOrderOfTheSubscriptions() {
+        var subscriptions = Flux.range(0, 1_000).map(i -> AuthorizationSubscription.of("willi",
+                i % 2 == 0 ? "write" : "delete", "something"));
+        var decisions     = new BulkPolicyDecisionPoint(pdp, 4, 8).decideOrdered(subscriptions).collectList()
+                .block();
+        Assertions.assertEquals(1_000, decisions.size());
+        for (int i = 0; i < decisions.size(); i++) {
+            Assertions.assertEquals(i, decisions.get(i).index());
+            Assertions.assertEquals(i % 2 == 0 ? Decision.PERMIT : Decision.DENY,
+                    decisions.get(i).decision().getDecision());
+        }
+    }
+
+    @Test
+    void unorderedDecisionsCoverAllSubscriptionsOfJsonLinesFile(@TempDir Path folder) throws IOException {
+        var file = folder.resolve("subscriptions.jsonl");
+        Files.writeString(file, IntStream.range(0, 100).mapToObj(
+                i -> "{\"subject\":\"willi\",\"action\":\"write\",\"resource\":\"something-" + i + "\"}")
+                .collect(Collectors.joining("\n")));
+        var decisions = new BulkPolicyDecisionPoint(pdp, 4, 8)
+                .decideUnordered(SubscriptionFiles.readJsonLines(file)).collectList().block();
+        Assertions.assertEquals(100, decisions.stream().map(BulkPolicyDecisionPoint.BulkDecision::index).distinct()
+                .count());
+        Assertions.assertTrue(
+                decisions.stream().allMatch(decision -> decision.decision().getDecision() == Decision.PERMIT));
+    }
+
+}
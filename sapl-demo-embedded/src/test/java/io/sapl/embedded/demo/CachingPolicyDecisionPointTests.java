@@ -0,0 +1,82 @@
+package io.sapl.embedded.demo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import io.sapl.pdp.PolicyDecisionPointFactory;
+import reactor.core.publisher.Sinks;
+
+class CachingPolicyDecisionPointTests {
+
+    private static final AuthorizationSubscription WRITE_SUBSCRIPTION = AuthorizationSubscription.of("willi",
+            "write", "something");
+
+    private EmbeddedPolicyDecisionPoint pdp;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pdp = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint(List::of, () -> List.of(EchoPIP.class),
+                List::of, () -> List.of(SimpleFunctionLibrary.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pdp.destroy();
+    }
+
+    @Test
+    void keyIgnoresOrderOfObjectKeys() throws Exception {
+        var mapper = new ObjectMapper();
+        var first  = AuthorizationSubscription.of(mapper.readTree("{\"name\":\"willi\",\"role\":\"admin\"}"),
+                "write", "something");
+        var second = AuthorizationSubscription.of(mapper.readTree("{\"role\":\"admin\",\"name\":\"willi\"}"),
+                "write", "something");
+        Assertions.assertEquals(CachingPolicyDecisionPoint.canonicalKey(first),
+                CachingPolicyDecisionPoint.canonicalKey(second));
+        Assertions.assertNotEquals(CachingPolicyDecisionPoint.canonicalKey(first),
+                CachingPolicyDecisionPoint.canonicalKey(WRITE_SUBSCRIPTION));
+    }
+
+    @Test
+    void repeatedSubscriptionsAreAnsweredFromCacheUntilInvalidated() throws Exception {
+        try (var cachingPdp = new CachingPolicyDecisionPoint(pdp, 10, Duration.ofMinutes(1), Set.of("echo.echo"),
+                () -> PolicyAttributes.inResources("/policies"))) {
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertEquals(Decision.PERMIT,
+                        cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block().getDecision());
+            }
+            Assertions.assertEquals(1, cachingPdp.getMisses());
+            Assertions.assertEquals(2, cachingPdp.getHits());
+
+            var policyChanges = Sinks.many().multicast().<Long>directBestEffort();
+            cachingPdp.invalidateOn(policyChanges.asFlux());
+            policyChanges.tryEmitNext(1L);
+            cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block();
+            Assertions.assertEquals(2, cachingPdp.getMisses());
+            Assertions.assertEquals(2, cachingPdp.getHits());
+        }
+    }
+
+    @Test
+    void policiesWithStreamingAttributesAreNeverCached() throws Exception {
+        try (var cachingPdp = new CachingPolicyDecisionPoint(pdp, 10, Duration.ofMinutes(1), Set.of("echo.echo"),
+                () -> PolicyAttributes.inDocument("policy \"p\" permit where <time.now> != undefined;"))) {
+            cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block();
+            cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block();
+            Assertions.assertEquals(0, cachingPdp.getHits());
+            Assertions.assertEquals(2, cachingPdp.getBypassed());
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.interpreter.functions.AnnotationFunctionContext;
+import io.sapl.interpreter.pip.AnnotationAttributeContext;
+import reactor.core.Disposables;
+
+class DebouncedPolicyFolderTests {
+
+    @Test
+    void onlyChangedDocumentsAreApplied(@TempDir Path source, @TempDir Path target) throws IOException {
+        Files.writeString(source.resolve("a.sapl"), "policy \"a\" permit");
+        Files.writeString(source.resolve("b.sapl"), "policy \"b\" deny");
+        Files.writeString(source.resolve("notes.txt"), "ignored");
+        try (var sync = new DebouncedPolicyFolder(source, target, Duration.ofMillis(100))) {
+            Assertions.assertEquals(2, sync.synchronizeAll());
+            Assertions.assertFalse(Files.exists(target.resolve("notes.txt")));
+
+            Files.writeString(source.resolve("a.sapl"), "policy \"a\" permit");
+            Files.writeString(source.resolve("b.sapl"), "policy \"b\" permit");
+            Files.delete(source.resolve("notes.txt"));
+            Assertions.assertEquals(1, sync.synchronizeAll());
+
+            Files.delete(source.resolve("a.sapl"));
+            Assertions.assertEquals(1, sync.synchronizeAll());
+            Assertions.assertFalse(Files.exists(target.resolve("a.sapl")));
+            Assertions.assertEquals("policy \"b\" permit", Files.readString(target.resolve("b.sapl")));
+            Assertions.assertEquals(3, sync.getChangedDocuments());
+        }
+    }
+
+    @Test
+    void burstOfEventsIsAppliedInOneBatch(@TempDir Path source, @TempDir Path target) throws Exception {
+        try (var sync = new DebouncedPolicyFolder(source, target, Duration.ofMillis(300))) {
+            sync.synchronizeAll();
+            sync.watch();
+            for (int i = 0; i < 50; i++) {
+                Files.writeString(source.resolve("p" + i + ".sapl"), "policy \"p" + i + "\" permit");
+            }
+            var deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+            while (sync.getChangedDocuments() < 50 && System.nanoTime() - deadline < 0) {
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(50, sync.getChangedDocuments());
+            Assertions.assertEquals(1, sync.getBatches());
+        }
+    }
+
+    @Test
+    void batchIsReevaluatedOnceAndUnchangedDecisionsAreCounted(@TempDir Path source, @TempDir Path target)
+            throws Exception {
+        Files.writeString(source.resolve("a.sapl"), "policy \"a\" permit");
+        try (var sync = new DebouncedPolicyFolder(source, target, Duration.ofMillis(100))) {
+            sync.synchronizeAll();
+            var pdp           = sync.policyDecisionPoint(new AnnotationAttributeContext(),
+                    new AnnotationFunctionContext());
+            var firstDecision = new CountDownLatch(10);
+            var subscriptions = Disposables.composite();
+            for (int i = 0; i < 10; i++) {
+                subscriptions.add(pdp.decide(AuthorizationSubscription.of("willi", "read", "resource" + i))
+                        .subscribe(decision -> firstDecision.countDown()));
+            }
+            Assertions.assertTrue(firstDecision.await(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 20; i++) {
+                Files.writeString(source.resolve("p" + i + ".sapl"),
+                        "policy \"p" + i + "\" deny action == \"other\"");
+            }
+            Assertions.assertEquals(20, sync.synchronizeAll());
+            awaitValue(sync::getReevaluations, 10);
+            Assertions.assertEquals(10, sync.getReevaluations());
+            Assertions.assertEquals(2, sync.getBatches());
+            Assertions.assertTrue(Files.exists(target.resolve("p19.sapl")));
+            subscriptions.dispose();
+            pdp.destroy();
+        }
+    }
+
+    @Test
+    void invalidDocumentRejectsTheWholeBatch(@TempDir Path source, @TempDir Path target) throws IOException {
+        Files.writeString(source.resolve("a.sapl"), "policy \"a\" permit");
+        try (var sync = new DebouncedPolicyFolder(source, target, Duration.ofMillis(100))) {
+            sync.synchronizeAll();
+            Files.writeString(source.resolve("a.sapl"), "policy \"a\" deny");
+            Files.writeString(source.resolve("broken.sapl"), "policy \"broken\" permit where (");
+            Assertions.assertThrows(IllegalArgumentException.class, sync::synchronizeAll);
+            Assertions.assertEquals(1, sync.getBatches());
+            Assertions.assertEquals("policy \"a\" permit", Files.readString(target.resolve("a.sapl")));
+            Assertions.assertFalse(Files.exists(target.resolve("broken.sapl")));
+        }
+    }
+
+    @Test
+    void changesOfRejectedBatchAreAppliedWithTheFix(@TempDir Path source, @TempDir Path target) throws Exception {
+        try (var sync = new DebouncedPolicyFolder(source, target, Duration.ofMillis(200))) {
+            sync.synchronizeAll();
+            sync.watch();
+            Files.writeString(source.resolve("a.sapl"), "policy \"a\" permit");
+            Files.writeString(source.resolve("broken.sapl"), "policy \"broken\" permit where (");
+            Thread.sleep(1000);
+            Assertions.assertEquals(0, sync.getBatches());
+
+            Files.writeString(source.resolve("broken.sapl"), "policy \"broken\" permit");
+            awaitValue(sync::getChangedDocuments, 2);
+            Assertions.assertEquals(1, sync.getBatches());
+            Assertions.assertEquals("policy \"a\" permit", Files.readString(target.resolve("a.sapl")));
+        }
+    }
+
+    @Test
+    void continuousEventsAreAppliedAfterTheMaximumWait(@TempDir Path source, @TempDir Path target) throws Exception {
+        try (var sync = new DebouncedPolicyFolder(source, target, Duration.ofMillis(300), Duration.ofSeconds(1))) {
+            sync.synchronizeAll();
+            sync.watch();
+            var end = System.nanoTime() + Duration.ofSeconds(3).toNanos();
+            for (int i = 0; System.nanoTime() - end < 0; i++) {
+                Files.writeString(source.resolve("p" + i + ".sapl"), "policy \"p" + i + "\" permit");
+                Thread.sleep(100);
+            }
+            Assertions.assertTrue(sync.getBatches() >= 2, "batches applied while events kept arriving");
+        }
+    }
+
+    private static void awaitValue(LongSupplier value, long expected) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (value.getAsLong() < expected && System.nanoTime() - deadline < 0) {
+            Thread.sleep(50);
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package io.sapl.embedded.demo;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -15,4 +17,14 @@ void demoIsExecutableWithoutError() {
         Assertions.assertEquals(0, resultCode);
     }
 
+    @Test
+    void parallelDemoScalesUpToAllProcessorsAndReportsNearestRankPercentiles() {
+        Assertions.assertEquals(List.of(1), ParallelPerformanceDemo.threadCounts(1));
+        Assertions.assertEquals(List.of(1, 2, 4, 6), ParallelPerformanceDemo.threadCounts(6));
+        Assertions.assertEquals(List.of(1, 2, 4, 8), ParallelPerformanceDemo.threadCounts(8));
+        var sorted = new long[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        Assertions.assertEquals(5, ParallelPerformanceDemo.percentile(sorted, 50.0D));
+        Assertions.assertEquals(10, ParallelPerformanceDemo.percentile(sorted, 99.0D));
+    }
+
 }
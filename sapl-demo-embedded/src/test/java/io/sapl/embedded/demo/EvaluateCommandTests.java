@@ -0,0 +1,66 @@
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import picocli.CommandLine;
+
+class EvaluateCommandTests {
+
+    @Test
+    void csvSubscriptionsAreEvaluatedIntoJsonLinesWithObligations(@TempDir Path folder) throws IOException {
+        var input  = folder.resolve("matrix.csv");
+        var output = folder.resolve("decisions.jsonl");
+        Files.writeString(input, "subject,action,resource\nwilli,read,something\nwilli,delete,something\n"
+                + "\"willi\",write,\"some, thing\"\n");
+
+        var resultCode = new CommandLine(new EmbeddedPDPDemo()).execute("evaluate", input.toString(), "-o",
+                output.toString());
+
+        Assertions.assertEquals(0, resultCode);
+        var lines = Files.readAllLines(output);
+        Assertions.assertEquals(3, lines.size());
+        var mapper = new ObjectMapper();
+        var read   = mapper.readTree(lines.get(0));
+        Assertions.assertEquals(0, read.get("index").asInt());
+        Assertions.assertEquals("PERMIT", read.at("/decision/decision").asText());
+        Assertions.assertEquals("logAccess", read.at("/decision/obligations/0/type").asText());
+        Assertions.assertEquals("DENY", mapper.readTree(lines.get(1)).at("/decision/decision").asText());
+        Assertions.assertEquals("some, thing", mapper.readTree(lines.get(2)).at("/subscription/resource").asText());
+    }
+
+    @Test
+    void memoryMappedJsonLinesAreEvaluatedIntoCsv(@TempDir Path folder) throws IOException {
+        var input  = folder.resolve("subscriptions.jsonl");
+        var output = folder.resolve("decisions.csv");
+        Files.writeString(input, IntStream.range(0, 500)
+                .mapToObj(i -> "{\"subject\":\"willi\",\"action\":\"write\",\"resource\":\"something-" + i + "\"}")
+                .collect(Collectors.joining("\r\n")));
+
+        var resultCode = new CommandLine(new EmbeddedPDPDemo()).execute("evaluate", input.toString(), "-o",
+                output.toString(), "--memory-mapped");
+
+        Assertions.assertEquals(0, resultCode);
+        var lines = Files.readAllLines(output);
+        Assertions.assertEquals(501, lines.size());
+        Assertions.assertEquals("0,willi,write,something-0,,PERMIT,,,", lines.get(1));
+        Assertions.assertEquals("499,willi,write,something-499,,PERMIT,,,", lines.get(500));
+    }
+
+    @Test
+    void csvLinesAreSplitRespectingQuotes() {
+        Assertions.assertEquals(List.of("a", "b,c", "say \"hi\"", ""),
+                SubscriptionFiles.parseCsvLine("a,\"b,c\",\"say \"\"hi\"\"\","));
+    }
+
+}
@@ -0,0 +1,43 @@
+package io.sapl.embedded.demo;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.interpreter.Val;
+
+class MemoizingFunctionContextTests {
+
+    @Test
+    void pureFunctionsAreFoundByAnnotation() {
+        Assertions.assertEquals(Set.of("simple.length", "simple.append", "simple.digest"),
+                MemoizingFunctionContext.pureFunctionsOf(SimpleFunctionLibrary.class));
+    }
+
+    @Test
+    void resultsOfPureFunctionsAreMemoizedByArgumentValues() throws Exception {
+        var context = new MemoizingFunctionContext(2, Set.of());
+        context.loadLibrary(SimpleFunctionLibrary.class);
+
+        var first = context.evaluate("simple.digest", Val.of("willi"), Val.of(10));
+        Assertions.assertEquals(first, context.evaluate("simple.digest", Val.of("willi"), Val.of(10)));
+        Assertions.assertEquals(1, context.getMisses());
+        Assertions.assertEquals(1, context.getHits());
+
+        context.evaluate("simple.digest", Val.of("willi"), Val.of(11));
+        context.evaluate("simple.length", Val.of("willi"));
+        context.evaluate("simple.digest", Val.of("willi"), Val.of(10));
+        Assertions.assertEquals(4, context.getMisses());
+    }
+
+    @Test
+    void errorsAreNotMemoized() throws Exception {
+        var context = new MemoizingFunctionContext(10, Set.of());
+        context.loadLibrary(SimpleFunctionLibrary.class);
+        Assertions.assertTrue(context.evaluate("simple.length", Val.of(1)).isError());
+        Assertions.assertTrue(context.evaluate("simple.length", Val.of(1)).isError());
+        Assertions.assertEquals(0, context.getHits());
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.sapl.embedded.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.functions.AnnotationFunctionContext;
+import io.sapl.interpreter.pip.AnnotationAttributeContext;
+
+class PolicySnapshotTests {
+
+    private static final Path POLICIES = Path.of("src/main/resources/policies");
+
+    @Test
+    void snapshotSurvivesRoundTripAndExtractsAllDocuments(@TempDir Path folder) throws IOException {
+        var snapshot = PolicySnapshot.fromFolder(POLICIES);
+        var bytes    = new ByteArrayOutputStream();
+        snapshot.writeTo(bytes);
+
+        var read = PolicySnapshot.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        Assertions.assertTrue(snapshot.matches(read));
+        Assertions.assertEquals(3, read.size());
+
+        read.extractTo(folder);
+        Assertions.assertEquals(Files.readString(POLICIES.resolve("policy_1.sapl")),
+                Files.readString(folder.resolve("policy_1.sapl")));
+        Assertions.assertTrue(Files.exists(folder.resolve(PolicySnapshot.PDP_CONFIGURATION)));
+    }
+
+    @Test
+    void pdpFromSnapshotUsesDocumentsAndAlgorithm() throws Exception {
+        var attributeContext = new AnnotationAttributeContext();
+        attributeContext.loadPolicyInformationPoint(EchoPIP.class);
+        var functionContext = new AnnotationFunctionContext();
+        functionContext.loadLibrary(SimpleFunctionLibrary.class);
+        var pdp = PolicyFolders.fromSnapshot(PolicySnapshot.fromFolder(POLICIES), "snapshot", attributeContext,
+                functionContext, new DefaultSAPLInterpreter()).pdp();
+        try {
+            Assertions.assertEquals(Decision.PERMIT,
+                    pdp.decideOnce(AuthorizationSubscription.of("willi", "write", "something")).block().getDecision());
+            Assertions.assertEquals(Decision.DENY,
+                    pdp.decideOnce(AuthorizationSubscription.of("willi", "delete", "something")).block().getDecision());
+        } finally {
+            pdp.destroy();
+        }
+    }
+
+    @Test
+    void damagedSnapshotIsRejected() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        PolicySnapshot.fromFolder(POLICIES).writeTo(bytes);
+        var damaged = bytes.toByteArray();
+        damaged[damaged.length / 2] ^= 0x5A;
+        Assertions.assertThrows(IOException.class,
+                () -> PolicySnapshot.readFrom(new ByteArrayInputStream(damaged)));
+        Assertions.assertTrue(PolicySnapshot.fromResource("/does-not-exist.snapshot").isEmpty());
+    }
+
+    @Test
+    void invalidPolicyFailsSnapshotCreation(@TempDir Path folder) throws IOException {
+        Files.writeString(folder.resolve("broken.sapl"), "policy \"broken\" permit where (");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PolicySnapshot.fromFolder(folder));
+    }
+
+}
@@ -0,0 +1,77 @@
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+
+class TenantPolicyDecisionPointsTests {
+
+    private static final String POLICY = "policy \"own\" permit action == \"read\" where subject == \"%s\";";
+
+    @Test
+    void tenantsAreLoadedLazilyAndDecideWithTheirOwnPolicies(@TempDir Path root) throws Exception {
+        writeTenant(root, "a", String.format(POLICY, "alice"));
+        writeTenant(root, "b", String.format(POLICY, "bob"));
+        try (var registry = new TenantPolicyDecisionPoints(root, Long.MAX_VALUE)) {
+            Assertions.assertEquals(0, registry.getLoadedTenants());
+            var alice = AuthorizationSubscription.of("alice", "read", "record");
+            Assertions.assertEquals(Decision.PERMIT, registry.decideOnce("a", alice).block().getDecision());
+            Assertions.assertEquals(Decision.DENY, registry.decideOnce("b", alice).block().getDecision());
+            Assertions.assertEquals(2, registry.getLoadedTenants());
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> registry.decideOnce("../a", alice).block());
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedTenantsAreEvictedWhenOverBudget(@TempDir Path root) throws Exception {
+        var policy = String.format(POLICY, "alice");
+        for (var tenant : new String[] { "a", "b", "c" }) {
+            writeTenant(root, tenant, policy);
+        }
+        var perTenant = TenantPolicyDecisionPoints.ESTIMATED_HEAP_BYTES_PER_TENANT
+                + policy.length() * TenantPolicyDecisionPoints.ESTIMATED_HEAP_BYTES_PER_SOURCE_BYTE;
+        try (var registry = new TenantPolicyDecisionPoints(root, 2 * perTenant)) {
+            var alice = AuthorizationSubscription.of("alice", "read", "record");
+            registry.decideOnce("a", alice).block();
+            registry.decideOnce("b", alice).block();
+            registry.decideOnce("a", alice).block();
+            registry.decideOnce("c", alice).block();
+            Assertions.assertEquals(2, registry.getLoadedTenants());
+            Assertions.assertEquals(1, registry.getEvictions());
+            Assertions.assertEquals(3, registry.getLoads());
+            Assertions.assertEquals(Decision.PERMIT, registry.decideOnce("b", alice).block().getDecision());
+            Assertions.assertEquals(4, registry.getLoads());
+        }
+    }
+
+    @Test
+    void evictedTenantIsDestroyedAfterItsLastOpenStream(@TempDir Path root) throws Exception {
+        writeTenant(root, "a", String.format(POLICY, "alice"));
+        try (var registry = new TenantPolicyDecisionPoints(root, Long.MAX_VALUE)) {
+            var alice  = AuthorizationSubscription.of("alice", "read", "record");
+            var stream = registry.decide("a", alice).subscribe();
+            registry.evict("a");
+            Assertions.assertEquals(0, registry.getLoadedTenants());
+            Assertions.assertEquals(1, registry.getRetiredTenants());
+            stream.dispose();
+            Assertions.assertEquals(0, registry.getRetiredTenants());
+            Assertions.assertEquals(Decision.PERMIT, registry.decideOnce("a", alice).block().getDecision());
+            Assertions.assertEquals(2, registry.getLoads());
+        }
+    }
+
+    private static void writeTenant(Path root, String tenant, String policy) throws IOException {
+        var folder = Files.createDirectories(root.resolve(tenant));
+        Files.writeString(folder.resolve("pdp.json"), "{ \"algorithm\": \"DENY_UNLESS_PERMIT\", \"variables\": {} }");
+        Files.writeString(folder.resolve("policy.sapl"), policy);
+    }
+
+}
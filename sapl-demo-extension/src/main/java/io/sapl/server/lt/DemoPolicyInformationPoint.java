@@ -22,8 +22,11 @@
 import java.io.IOException;
 import java.net.InetAddress;
 import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
 import io.sapl.api.interpreter.PolicyEvaluationException;
@@ -34,6 +37,8 @@
 import io.sapl.api.validation.Text;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * This is a small custom Policy Information Point for illustrating how to
@@ -58,21 +63,60 @@
  * runtime.
  */
 @PolicyInformationPoint(name = "demo", description = "Some documenting text for the PIP.")
-public class DemoPolicyInformationPoint {
+public class DemoPolicyInformationPoint implements DisposableBean {
 
     private static final long DEFAULT_POLLING_INTERVAL_MS = 2_000L;
 
     private static final int DEFAULT_TIMEOUT_MS = 1_000;
 
+    /*
+     * Bounds the number of probes running concurrently and waiting for a thread.
+     * Probes exceeding the limits are skipped until the next polling interval.
+     */
+    private static final int MAX_CONCURRENT_PROBES = 10 * Runtime.getRuntime().availableProcessors();
+
+    private static final int MAX_QUEUED_PROBES = 1_000;
+
+    private static final int PROBE_THREAD_TTL_SECONDS = 60;
+
+    /*
+     * Identifies one polling stream. All subscriptions probing the same host with
+     * the same interval and timeout share the stream.
+     */
+    private record PollingKey(String hostname, long pollingIntervalMs, int timeoutMs) {
+    }
+
+    private final SharedStreams<PollingKey, Boolean> pollingStreams = new SharedStreams<>(this::poll);
+
+    private final AtomicLong startedPolls = new AtomicLong();
+
+    /*
+     * The DNS lookups and reachability probes are blocking. They run on this
+     * dedicated scheduler, never on the thread subscribing to the attribute, which
+     * may be a Netty event loop of the PDP server.
+     */
+    private final Scheduler probes = Schedulers.newBoundedElastic(MAX_CONCURRENT_PROBES, MAX_QUEUED_PROBES,
+            "demo-pip-probes", PROBE_THREAD_TTL_SECONDS, true);
+
+    private final HostResolver resolver = new HostResolver(probes);
+
+    /*
+     * The toggle has no per-subscription parameters. Thus, all subscriptions share
+     * one hot timer instead of starting one each. The timer runs while there is at
+     * least one subscriber, and late subscribers immediately receive the current
+     * state.
+     */
+    private final Flux<Val> toggle = Flux
+            .concat(Flux.just(Boolean.TRUE),
+                    Flux.just(Boolean.TRUE, Boolean.FALSE).repeat().delayElements(Duration.ofMillis(500)))
+            .map(Val::of).replay(1).refCount();
+
     /**
      * @return A Flux of Boolean values inverting every 500ms, starting with true.
      */
     @EnvironmentAttribute(name = "toggle", docs = "Periodically turns from true to false.")
     public Flux<Val> toggle() {
-        return Flux
-                .concat(Flux.just(Boolean.TRUE),
-                        Flux.just(Boolean.TRUE, Boolean.FALSE).repeat().delayElements(Duration.ofMillis(500)))
-                .map(Val::of);
+        return toggle;
     }
 
     /**
@@ -145,9 +189,14 @@ public Flux<Val> reachable(@Text Val leftHandHostnameParameter) {
     }
 
     /**
-     * This function first resolves the host name and then repeatedly checks
-     * availability of the host. This method only emits an event if the availability
-     * status changes.
+     * Returns the polling stream for the host. Without sharing, each policy
+     * evaluation using the attribute would start its own DNS lookups and probes,
+     * i.e., 1,000 subscriptions would ping the same host 1,000 times per interval.
+     *
+     * Therefore, all subscribers with the same host name, interval, and timeout
+     * share one polling stream. The stream is reference counted: polling starts
+     * with the first subscriber and stops as soon as the last subscriber cancels.
+     * Late subscribers immediately receive the last known availability status.
      * 
      * @param hostname          the host name to resolve
      * @param pollingIntervalMs the polling time in ms
@@ -155,8 +204,21 @@ public Flux<Val> reachable(@Text Val leftHandHostnameParameter) {
      * @return A boolean Flux indication the host's availability.
      */
     private Flux<Boolean> reachable(String hostname, long pollingIntervalMs, int timeout) {
-        return dnsLookup(hostname).repeat().delayElements(Duration.ofMillis(pollingIntervalMs))
-                .flatMap(reachable(timeout)).distinctUntilChanged();
+        return pollingStreams.get(new PollingKey(hostname, pollingIntervalMs, timeout));
+    }
+
+    /**
+     * This function first resolves the host name and then repeatedly checks
+     * availability of the host. This method only emits an event if the availability
+     * status changes.
+     * 
+     * @param key the host name, polling interval, and timeout
+     * @return A boolean Flux indication the host's availability.
+     */
+    private Flux<Boolean> poll(PollingKey key) {
+        return dnsLookup(key.hostname()).repeat().delayElements(Duration.ofMillis(key.pollingIntervalMs()))
+                .flatMap(reachable(key.timeoutMs())).distinctUntilChanged()
+                .doOnSubscribe(subscription -> startedPolls.incrementAndGet());
     }
 
     /**
@@ -167,12 +229,15 @@ private Flux<Boolean> reachable(String hostname, long pollingIntervalMs, int tim
      * an asynchronous replacement. There generally are asynchronous libraries
      * available. However, as this is just a tutorial project we omit additional
      * dependencies for simplicity's sake.
+     *
+     * The lookup runs on the probe scheduler and its result is cached, see
+     * {@link HostResolver}.
      * 
      * @param hostname the hostname to resolve.
      * @return the resolved hostname
      */
     private Mono<InetAddress> dnsLookup(String hostname) {
-        return Mono.fromCallable(() -> InetAddress.getByName(hostname));
+        return resolver.resolve(hostname);
     }
 
     /**
@@ -183,6 +248,9 @@ private Mono<InetAddress> dnsLookup(String hostname) {
      * an asynchronous replacement. There generally are asynchronous libraries
      * available. However, as this is just a tutorial project we omit additional
      * dependencies for simplicity's sake.
+     *
+     * The probe runs on the probe scheduler. If the scheduler is saturated, the
+     * probe is skipped, i.e., the last status remains valid.
      * 
      * @return true if the host replied in time
      */
@@ -193,7 +261,26 @@ private Function<InetAddress, Mono<Boolean>> reachable(int timeout) {
             } catch (IOException e) {
                 return Boolean.FALSE;
             }
-        });
+        }).subscribeOn(probes).onErrorResume(RejectedExecutionException.class, e -> Mono.empty());
+    }
+
+    /**
+     * @return the number of polling streams started so far
+     */
+    long getStartedPolls() {
+        return startedPolls.get();
+    }
+
+    /**
+     * @return the number of polling streams with subscribers
+     */
+    int getActivePolls() {
+        return pollingStreams.size();
+    }
+
+    @Override
+    public void destroy() {
+        probes.dispose();
     }
 
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Resolves host names without blocking the subscribing thread and caches the
+ * results.
+ *
+ * InetAddress.getByName() is blocking. The lookups are therefore executed on
+ * the given scheduler, which must be suitable for blocking tasks. Successful
+ * lookups are cached for the positive TTL and failed lookups for the negative
+ * TTL. Concurrent lookups of the same host name share one pending lookup.
+ *
+ * The JDK does not expose the TTL of the DNS records. By default, the TTLs
+ * configured for the JVM's own address cache are used, i.e., the security
+ * properties 'networkaddress.cache.ttl' and
+ * 'networkaddress.cache.negative.ttl'.
+ */
+final class HostResolver {
+
+    static final Duration DEFAULT_TTL = Duration.ofSeconds(30L);
+
+    static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(10L);
+
+    private static final Duration FOREVER = Duration.ofDays(36_500L);
+
+    /**
+     * A blocking host name lookup, by default InetAddress::getByName.
+     */
+    @FunctionalInterface
+    interface Lookup {
+        InetAddress resolve(String hostname) throws UnknownHostException;
+    }
+
+    private final Lookup    lookup;
+    private final Duration  ttl;
+    private final Duration  negativeTtl;
+    private final Scheduler scheduler;
+
+    private final ConcurrentMap<String, Mono<InetAddress>> addresses = new ConcurrentHashMap<>();
+
+    HostResolver(Scheduler scheduler) {
+        this(InetAddress::getByName, ttlFromSecurityProperty("networkaddress.cache.ttl", DEFAULT_TTL),
+                ttlFromSecurityProperty("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL), scheduler);
+    }
+
+    HostResolver(Lookup lookup, Duration ttl, Duration negativeTtl, Scheduler scheduler) {
+        this.lookup      = lookup;
+        this.ttl         = ttl;
+        this.negativeTtl = negativeTtl;
+        this.scheduler   = scheduler;
+    }
+
+    /**
+     * @param hostname the host name to resolve
+     * @return the address of the host, or an error if the host is unknown.
+     */
+    Mono<InetAddress> resolve(String hostname) {
+        return addresses.computeIfAbsent(hostname, this::cachedLookup);
+    }
+
+    private Mono<InetAddress> cachedLookup(String hostname) {
+        return Mono.fromCallable(() -> lookup.resolve(hostname)).subscribeOn(scheduler).cache(address -> ttl,
+                error -> negativeTtl, () -> Duration.ZERO);
+    }
+
+    /*
+     * A negative value of the properties means 'cache forever', zero means 'do
+     * not cache'.
+     */
+    private static Duration ttlFromSecurityProperty(String property, Duration defaultTtl) {
+        var value = Security.getProperty(property);
+        if (value == null)
+            return defaultTtl;
+        try {
+            var seconds = Long.parseLong(value.trim());
+            return seconds < 0 ? FOREVER : Duration.ofSeconds(seconds);
+        } catch (NumberFormatException e) {
+            return defaultTtl;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.interpreter.Val;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+class DemoPolicyInformationPointTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10L);
+
+    private static final String HOOK = "countScheduledTasks";
+
+    private DemoPolicyInformationPoint pip;
+
+    @BeforeEach
+    void setUp() {
+        pip = new DemoPolicyInformationPoint();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pip.destroy();
+    }
+
+    @Test
+    void when_blockingLookupOnNonBlockingThread_then_blockHoundDetectsIt() {
+        var blockingLookup = Mono.fromCallable(() -> InetAddress.getByName("localhost"))
+                .subscribeOn(Schedulers.parallel());
+        StepVerifier.create(blockingLookup).expectError(BlockingOperationError.class).verify(TIMEOUT);
+    }
+
+    @Test
+    void when_reachableSubscribedOnNonBlockingThread_then_probesDoNotBlockIt() {
+        var reachable = pip.reachable(Val.of("localhost"), Val.of(200), Val.of(100)).take(1)
+                .subscribeOn(Schedulers.parallel());
+        StepVerifier.create(reachable).expectNextMatches(Val::isBoolean).expectComplete().verify(TIMEOUT);
+    }
+
+    @Test
+    void when_manySubscriptionsOnNonBlockingThreads_then_probesDoNotBlockThem() {
+        var subscriptions = Flux.range(0, 100).flatMap(i -> pip
+                .reachable(Val.of("localhost"), Val.of(200), Val.of(100)).take(1).subscribeOn(Schedulers.parallel()));
+        StepVerifier.create(subscriptions).expectNextCount(100).expectComplete().verify(TIMEOUT);
+    }
+
+    @Test
+    void when_manyReachableSubscribers_then_onePollIsShared() throws InterruptedException {
+        var subscribers   = 1_000;
+        var received      = new CountDownLatch(subscribers);
+        var subscriptions = new ArrayList<Disposable>(subscribers);
+        for (var i = 0; i < subscribers; i++)
+            subscriptions.add(pip.reachable(Val.of("localhost"), Val.of(200), Val.of(100))
+                    .subscribeOn(Schedulers.parallel()).subscribe(value -> received.countDown()));
+        assertThat(received.await(5L, TimeUnit.SECONDS)).isTrue();
+        assertThat(pip.getStartedPolls()).isEqualTo(1L);
+        assertThat(pip.getActivePolls()).isEqualTo(1);
+
+        subscriptions.forEach(Disposable::dispose);
+        assertThat(pip.getActivePolls()).isZero();
+
+        StepVerifier.create(pip.reachable(Val.of("localhost"), Val.of(200), Val.of(100)).take(1))
+                .expectNextMatches(Val::isBoolean).expectComplete().verify(TIMEOUT);
+        assertThat(pip.getStartedPolls()).isEqualTo(2L);
+    }
+
+    @Test
+    void when_manyToggleSubscribers_then_oneTimerIsShared() throws InterruptedException {
+        var scheduledTasks = new AtomicLong();
+        Schedulers.onScheduleHook(HOOK, task -> {
+            scheduledTasks.incrementAndGet();
+            return task;
+        });
+        try {
+            var subscribers   = 10_000;
+            var toggled       = new CountDownLatch(subscribers);
+            var subscriptions = new ArrayList<Disposable>(subscribers);
+            for (var i = 0; i < subscribers; i++)
+                subscriptions.add(pip.toggle().filter(Val.FALSE::equals).subscribe(value -> toggled.countDown()));
+            assertThat(toggled.await(5L, TimeUnit.SECONDS)).isTrue();
+            subscriptions.forEach(Disposable::dispose);
+            // one delay per toggle element instead of one per element and subscriber
+            assertThat(scheduledTasks.get()).isLessThan(subscribers);
+        } finally {
+            Schedulers.resetOnScheduleHook(HOOK);
+        }
+    }
+
+    @Test
+    void when_unknownHost_then_error() {
+        var reachable = pip.reachable(Val.of("host.invalid"), Val.of(200), Val.of(100))
+                .subscribeOn(Schedulers.parallel());
+        StepVerifier.create(reachable).expectError(UnknownHostException.class).verify(TIMEOUT);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+class HostResolverTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10L);
+
+    private static final Duration LONG_TTL = Duration.ofMinutes(5L);
+
+    private final Scheduler scheduler = Schedulers.newBoundedElastic(2, 100, "test-probes");
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    void when_resolvedRepeatedly_then_lookedUpOnce() {
+        var resolver = new HostResolver(this::countingLookup, LONG_TTL, LONG_TTL, scheduler);
+
+        var addresses = Flux.range(0, 100).flatMap(i -> resolver.resolve("localhost"));
+
+        StepVerifier.create(addresses).expectNextCount(100).expectComplete().verify(TIMEOUT);
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void when_ttlExpired_then_lookedUpAgain() throws InterruptedException {
+        var resolver = new HostResolver(this::countingLookup, Duration.ofMillis(50L), LONG_TTL, scheduler);
+
+        resolver.resolve("localhost").block(TIMEOUT);
+        Thread.sleep(200L);
+        resolver.resolve("localhost").block(TIMEOUT);
+
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    void when_hostUnknown_then_failureCachedForNegativeTtl() {
+        HostResolver.Lookup failingLookup = hostname -> {
+            lookups.incrementAndGet();
+            throw new UnknownHostException(hostname);
+        };
+        var resolver = new HostResolver(failingLookup, LONG_TTL, LONG_TTL, scheduler);
+
+        StepVerifier.create(resolver.resolve("unknown")).expectError(UnknownHostException.class).verify(TIMEOUT);
+        StepVerifier.create(resolver.resolve("unknown")).expectError(UnknownHostException.class).verify(TIMEOUT);
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void when_resolved_then_lookupRunsOnGivenScheduler() {
+        var lookupThread = new AtomicReference<String>();
+        var resolver     = new HostResolver(hostname -> {
+                             lookupThread.set(Thread.currentThread().getName());
+                             return InetAddress.getLoopbackAddress();
+                         }, LONG_TTL, LONG_TTL, scheduler);
+
+        resolver.resolve("localhost").block(TIMEOUT);
+
+        assertThat(lookupThread.get()).startsWith("test-probes");
+    }
+
+    private InetAddress countingLookup(String hostname) {
+        lookups.incrementAndGet();
+        return InetAddress.getLoopbackAddress();
+    }
+
+}
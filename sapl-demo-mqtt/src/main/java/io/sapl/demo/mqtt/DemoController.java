@@ -48,6 +48,14 @@ public Flux<ServerSentEvent<String>> recoverAfterDeny() {
                 .map(value -> ServerSentEvent.<String>builder().data(value).build());
     }
 
+    @GetMapping(value = "/securedShared", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ServerSentEvent<String>> recoverAfterDenyShared() {
+        return service.getFluxStringRecoverableShared().onErrorContinue(AccessDeniedException.class,
+                (error, reason) -> log.warn("ACCESS DENIED ('" + error.getMessage()
+                        + "') (data will automatically resume once the MQTT topic 'status' gets an 'emergency' event."))
+                .map(value -> ServerSentEvent.<String>builder().data(value).build());
+    }
+
     @GetMapping(value = "/publishMqttEvent")
     public Mono<String> publichMqttEvent() {
         return mqttClient.publish("demoTopic", "aMessage", true).map(Object::toString);
@@ -32,4 +32,10 @@ public Flux<String> getFluxStringRecoverable() {
                 .map(i -> String.format("event after subscription %d - time %s", i, Instant.now()));
     }
 
+    @EnforceRecoverableIfDenied(subject = "authentication.getName()", action = "'read'", resource = "'sharedTime'")
+    public Flux<String> getFluxStringRecoverableShared() {
+        return Flux.interval(Duration.ofMillis(500L))
+                .map(i -> String.format("event after subscription %d - time %s", i, Instant.now()));
+    }
+
 }
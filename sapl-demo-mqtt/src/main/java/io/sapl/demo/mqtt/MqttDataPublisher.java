@@ -3,6 +3,8 @@
 import java.time.Duration;
 
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import lombok.extern.slf4j.Slf4j;
@@ -15,10 +17,16 @@ public class MqttDataPublisher implements DisposableBean {
 
     Disposable publisher;
 
-    public MqttDataPublisher(MqttClientService mqttClient) {
-        log.debug("Starting to send status events...");
-        publisher = Flux.interval(Duration.ofSeconds(3L)).map(i -> i % 2 == 0 ? "ok" : "emergency")
-                .flatMap(status -> mqttClient.publish("status", status, true)).subscribe();
+    @Autowired
+    public MqttDataPublisher(MqttClientService mqttClient,
+            @Value("${io.sapl.demo.mqtt.status-interval:3s}") Duration interval) {
+        this(mqttClient, "status", interval);
+    }
+
+    MqttDataPublisher(MqttClientService mqttClient, String topic, Duration interval) {
+        log.debug("Starting to send status events to '{}' every {}...", topic, interval);
+        publisher = Flux.interval(interval).onBackpressureDrop().map(i -> i % 2 == 0 ? "ok" : "emergency")
+                .flatMap(status -> mqttClient.publish(topic, status, true)).subscribe();
     }
 
     @Override
@@ -0,0 +1,188 @@
+package io.sapl.demo.mqtt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5AsyncClient;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.connect.connack.Mqtt5ConnAckReasonCode;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Multiplexes MQTT topic subscriptions over a single broker connection.
+ *
+ * The broker address and port are taken from the default broker of the
+ * {@code mqttPipConfig} variable in the pdp.json, so the multiplexer connects
+ * to the same broker as the {@code <mqtt.messages>} attribute. Its client id is
+ * the configured client id with the suffix {@value #CLIENT_ID_SUFFIX}, as the
+ * broker disconnects a client when another one connects with the same id.
+ *
+ * All subscribers of a topic share one MQTT subscription. The subscription is
+ * reference counted: it is sent to the broker with the first subscriber and
+ * removed once the last subscriber cancels. The broker delivers the retained
+ * message of the topic to the first subscriber, and late joiners immediately
+ * receive the most recent message of the topic.
+ *
+ * High-frequency topics are conflated once per topic before the messages are
+ * shared, as most of the resulting policy re-evaluations would be identical
+ * or immediately superseded:
+ * <ul>
+ * <li>{@code io.sapl.demo.mqtt.conflation.window}: only the latest message of
+ * each window is forwarded. 0s turns sampling off.</li>
+ * <li>{@code io.sapl.demo.mqtt.conflation.distinct}: messages with the same
+ * payload as the previously forwarded one are dropped.</li>
+ * </ul>
+ * Slow subscribers always receive the latest message instead of a growing
+ * backlog.
+ */
+@Slf4j
+@Service
+@DependsOn("mqttBrokerLifecycleService")
+public class MqttTopicMultiplexer implements DisposableBean {
+
+    static final String CLIENT_ID_SUFFIX = "-multiplexer";
+
+    /**
+     * The broker of the mqttPipConfig the multiplexer connects to.
+     */
+    record BrokerConfig(String address, int port, String clientId) {
+    }
+
+    private final Mqtt5AsyncClient              mqttClient;
+    private final SharedStreams<String, String> topics              = new SharedStreams<>(this::sharedSubscription);
+    private final AtomicInteger                 brokerSubscriptions = new AtomicInteger();
+    private final AtomicLong                    receivedMessages    = new AtomicLong();
+    private final AtomicLong                    forwardedMessages   = new AtomicLong();
+    private final Duration                      conflationWindow;
+    private final boolean                       distinctPayloads;
+
+    public MqttTopicMultiplexer(@Value("${io.sapl.demo.mqtt.conflation.window:0s}") Duration conflationWindow,
+            @Value("${io.sapl.demo.mqtt.conflation.distinct:false}") boolean distinctPayloads,
+            @Value("${io.sapl.pdp.embedded.pdp-config-type:RESOURCES}") String pdpConfigType,
+            @Value("${io.sapl.pdp.embedded.config-path:/policies}") String configPath, ResourceLoader resourceLoader,
+            ObjectMapper mapper) throws InterruptedException, ExecutionException, IOException {
+        this.conflationWindow = conflationWindow;
+        this.distinctPayloads = distinctPayloads;
+        var location     = ("FILESYSTEM".equals(pdpConfigType) ? "file:" : "classpath:") + configPath + "/pdp.json";
+        var brokerConfig = brokerConfig(mapper.readTree(resourceLoader.getResource(location).getInputStream()));
+        log.debug("Connect MQTT multiplexer to {}:{}... ", brokerConfig.address(), brokerConfig.port());
+        mqttClient = Mqtt5Client.builder().identifier(brokerConfig.clientId() + CLIENT_ID_SUFFIX)
+                .serverHost(brokerConfig.address()).serverPort(brokerConfig.port()).buildAsync();
+        var connAckMessage = mqttClient.connect().get(); // Block for Demo
+        if (connAckMessage.getReasonCode() != Mqtt5ConnAckReasonCode.SUCCESS) {
+            throw new IllegalStateException(
+                    "Connection to the mqtt broker couldn't be established:" + connAckMessage.getReasonCode());
+        }
+        log.debug("Connect MQTT multiplexer... success");
+    }
+
+    /**
+     * @param pdpConfiguration the content of the pdp.json
+     * @return the default broker of the mqttPipConfig variable, or the only
+     *         broker if no default is set
+     */
+    static BrokerConfig brokerConfig(JsonNode pdpConfiguration) {
+        var pipConfig   = pdpConfiguration.path("variables").path("mqttPipConfig");
+        var defaultName = pipConfig.path("defaultBrokerConfigName").asText();
+        var brokers     = pipConfig.path("brokerConfig");
+        if (brokers.isObject())
+            brokers = JsonNodeFactory.instance.arrayNode().add(brokers);
+        for (var broker : brokers) {
+            if (defaultName.isEmpty() || defaultName.equals(broker.path("name").asText()))
+                return new BrokerConfig(broker.path("brokerAddress").asText(), broker.path("brokerPort").asInt(),
+                        broker.path("clientId").asText());
+        }
+        throw new IllegalStateException("No broker '" + defaultName + "' in the mqttPipConfig of the pdp.json");
+    }
+
+    /**
+     * @param topic the MQTT topic
+     * @return the UTF-8 payloads of the messages published on the topic, shared
+     *         by all subscribers of the topic.
+     */
+    public Flux<String> messages(String topic) {
+        return topics.get(topic).onBackpressureLatest();
+    }
+
+    /**
+     * @return the number of topic subscriptions currently held at the broker.
+     */
+    public int getBrokerSubscriptions() {
+        return brokerSubscriptions.get();
+    }
+
+    /**
+     * @return the number of messages received from the broker.
+     */
+    public long getReceivedMessages() {
+        return receivedMessages.get();
+    }
+
+    /**
+     * @return the number of messages forwarded to the subscribers after
+     *         conflation. Each forwarded message triggers the re-evaluation of
+     *         the policies using the topic.
+     */
+    public long getForwardedMessages() {
+        return forwardedMessages.get();
+    }
+
+    private Flux<String> sharedSubscription(String topic) {
+        return Flux.<String>create(sink -> {
+            brokerSubscriptions.incrementAndGet();
+            log.debug("Subscribing to MQTT topic '{}'", topic);
+            mqttClient.subscribeWith().topicFilter(topic).qos(MqttQos.AT_MOST_ONCE).callback(publish -> {
+                receivedMessages.incrementAndGet();
+                sink.next(payloadOf(publish));
+            }).send().whenComplete((subAck, error) -> {
+                if (error != null)
+                    sink.error(error);
+            });
+            sink.onDispose(() -> {
+                brokerSubscriptions.decrementAndGet();
+                log.debug("Unsubscribing from MQTT topic '{}'", topic);
+                mqttClient.unsubscribeWith().topicFilter(topic).send();
+            });
+        }, FluxSink.OverflowStrategy.LATEST).transform(this::conflate)
+                .doOnNext(payload -> forwardedMessages.incrementAndGet());
+    }
+
+    private Flux<String> conflate(Flux<String> payloads) {
+        var conflated = payloads;
+        if (!conflationWindow.isZero())
+            conflated = conflated.sample(conflationWindow);
+        if (distinctPayloads)
+            conflated = conflated.distinctUntilChanged();
+        return conflated;
+    }
+
+    private static String payloadOf(Mqtt5Publish publish) {
+        return new String(publish.getPayloadAsBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException, ExecutionException {
+        log.debug("Disconnect MQTT multiplexer");
+        mqttClient.disconnect().get();// Block for Demo
+    }
+
+}
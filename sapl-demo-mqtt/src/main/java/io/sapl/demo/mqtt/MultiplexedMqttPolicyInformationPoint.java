@@ -0,0 +1,40 @@
+package io.sapl.demo.mqtt;
+
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.api.pip.Attribute;
+import io.sapl.api.pip.PolicyInformationPoint;
+import io.sapl.api.validation.Text;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+
+/**
+ * Provides the messages of MQTT topics via the {@link MqttTopicMultiplexer}.
+ *
+ * In contrast to {@code <mqtt.messages>}, all policy evaluations accessing the
+ * same topic share one MQTT subscription, no matter how many decision streams
+ * are open. The attribute is accessed like this:
+ *
+ * "status".<sharedMqtt.messages>
+ */
+@Component
+@RequiredArgsConstructor
+@PolicyInformationPoint(name = "sharedMqtt", description = "MQTT messages, one broker subscription per topic")
+public class MultiplexedMqttPolicyInformationPoint {
+
+    private final MqttTopicMultiplexer multiplexer;
+
+    /**
+     * @param topic     the MQTT topic
+     * @param variables the variables in the current evaluation context
+     * @return the payloads of the messages published on the topic as text
+     */
+    @Attribute(name = "messages", docs = "Messages of a topic. Usage: \"topic\".<sharedMqtt.messages>")
+    public Flux<Val> messages(@Text Val topic, Map<String, Val> variables) {
+        return multiplexer.messages(topic.getText()).map(Val::of);
+    }
+
+}
@@ -0,0 +1,39 @@
+package io.sapl.demo.mqtt;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Registers the {@link SampledReportingInterceptor} with the embedded PDP. It
+ * replaces io.sapl.pdp.embedded.print-text-report, which renders a report for
+ * every decision. See the io.sapl.demo.reporting section of the
+ * application.yml.
+ */
+@Configuration
+@ConditionalOnProperty(name = "io.sapl.demo.reporting.enabled", havingValue = "true", matchIfMissing = true)
+public class SampledReportingConfiguration {
+
+    @Bean
+    SubscriptionTimestamps subscriptionTimestamps(ObjectMapper mapper,
+            @Value("${io.sapl.demo.reporting.latency-threshold:0s}") Duration latencyThreshold) {
+        return new SubscriptionTimestamps(mapper, !latencyThreshold.isZero());
+    }
+
+    @Bean
+    SampledReportingInterceptor sampledReportingInterceptor(ObjectMapper mapper, SubscriptionTimestamps timestamps,
+            @Value("${io.sapl.demo.reporting.sample-rate:100}") int sampleRate,
+            @Value("${io.sapl.demo.reporting.always-report-deny-and-indeterminate:true}") boolean alwaysReportDeny,
+            @Value("${io.sapl.demo.reporting.latency-threshold:0s}") Duration latencyThreshold,
+            @Value("${io.sapl.pdp.embedded.pretty-print-reports:false}") boolean prettyPrint,
+            @Value("${io.sapl.demo.reporting.queue-capacity:1000}") int queueCapacity) {
+        return new SampledReportingInterceptor(mapper, timestamps, sampleRate, alwaysReportDeny, latencyThreshold,
+                prettyPrint, queueCapacity);
+    }
+
+}
@@ -0,0 +1,163 @@
+package io.sapl.demo.mqtt;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.Decision;
+import io.sapl.api.pdp.TracedDecision;
+import io.sapl.pdp.TracedDecisionInterceptor;
+import io.sapl.pdp.interceptors.ReportBuilderUtil;
+import io.sapl.pdp.interceptors.ReportTextRenderUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs text reports for a selection of decisions, instead of for every
+ * decision like print-text-report. A decision is reported if
+ * <ul>
+ * <li>it is one of every sampleRate decisions,</li>
+ * <li>it is DENY or INDETERMINATE and these are always reported, or</li>
+ * <li>it is the first decision of a subscription and took longer than the
+ * latency threshold.</li>
+ * </ul>
+ * On the decision path, only the trace of a selected decision is captured.
+ * Reducing the trace to a report and rendering it as text happens on a
+ * background thread. If the reports cannot keep up, further reports are
+ * dropped and counted instead of slowing down decisions.
+ * <p>
+ * Determining the latency requires the trace of every decision, so the
+ * latency threshold is off by default.
+ */
+@Slf4j
+public class SampledReportingInterceptor implements TracedDecisionInterceptor, DisposableBean {
+
+    private static final String AUTHORIZATION_SUBSCRIPTION = "authorizationSubscription";
+
+    private final SubscriptionTimestamps timestamps;
+
+    private final int sampleRate;
+
+    private final boolean alwaysReportDenyAndIndeterminate;
+
+    private final long latencyThresholdNanos;
+
+    private final BiConsumer<String, JsonNode> reporter;
+
+    private final ThreadPoolExecutor renderer;
+
+    private final AtomicLong decisions = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param sampleRate       report one of every sampleRate decisions, 0 to turn
+     *                         sampling off
+     * @param latencyThreshold report first decisions taking longer, zero to turn
+     *                         off
+     * @param queueCapacity    maximum number of reports waiting to be rendered
+     */
+    public SampledReportingInterceptor(ObjectMapper mapper, SubscriptionTimestamps timestamps, int sampleRate,
+            boolean alwaysReportDenyAndIndeterminate, Duration latencyThreshold, boolean prettyPrint,
+            int queueCapacity) {
+        this(timestamps, sampleRate, alwaysReportDenyAndIndeterminate, latencyThreshold, queueCapacity,
+                (reason, trace) -> logReport(reason, trace, prettyPrint, mapper));
+    }
+
+    /**
+     * @param reporter receives the reason and trace of each selected decision on
+     *                 the background thread
+     */
+    SampledReportingInterceptor(SubscriptionTimestamps timestamps, int sampleRate,
+            boolean alwaysReportDenyAndIndeterminate, Duration latencyThreshold, int queueCapacity,
+            BiConsumer<String, JsonNode> reporter) {
+        this.timestamps                       = timestamps;
+        this.sampleRate                       = sampleRate;
+        this.alwaysReportDenyAndIndeterminate = alwaysReportDenyAndIndeterminate;
+        this.latencyThresholdNanos            = latencyThreshold.toNanos();
+        this.reporter                         = reporter;
+        this.renderer                         = newRenderer(queueCapacity);
+    }
+
+    private static ThreadPoolExecutor newRenderer(int queueCapacity) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    var thread = new Thread(runnable, "decision-report-renderer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public TracedDecision apply(TracedDecision tracedDecision) {
+        var      reason = reason(tracedDecision);
+        JsonNode trace  = null;
+        if (latencyThresholdNanos > 0) {
+            trace = tracedDecision.getTrace();
+            var latencyReason = latencyReason(trace);
+            if (reason == null) {
+                reason = latencyReason;
+            }
+        }
+        if (reason != null) {
+            submit(reason, trace == null ? tracedDecision.getTrace() : trace);
+        }
+        return tracedDecision;
+    }
+
+    private String reason(TracedDecision tracedDecision) {
+        var count    = decisions.incrementAndGet();
+        var decision = tracedDecision.getAuthorizationDecision().getDecision();
+        if (alwaysReportDenyAndIndeterminate && (decision == Decision.DENY || decision == Decision.INDETERMINATE)) {
+            return decision.name();
+        }
+        if (sampleRate > 0 && count % sampleRate == 0) {
+            return "sample 1 in " + sampleRate;
+        }
+        return null;
+    }
+
+    private String latencyReason(JsonNode trace) {
+        var receivedAtNanos = timestamps.take(trace.get(AUTHORIZATION_SUBSCRIPTION));
+        if (receivedAtNanos == null) {
+            return null;
+        }
+        var latencyNanos = System.nanoTime() - receivedAtNanos;
+        return latencyNanos > latencyThresholdNanos ? "latency " + Duration.ofNanos(latencyNanos).toMillis() + " ms"
+                : null;
+    }
+
+    private void submit(String reason, JsonNode trace) {
+        try {
+            renderer.execute(() -> reporter.accept(reason, trace));
+        } catch (RejectedExecutionException e) {
+            var total = dropped.incrementAndGet();
+            if (Long.bitCount(total) == 1) {
+                log.warn("Decision reports cannot keep up, {} reports dropped so far", total);
+            }
+        }
+    }
+
+    private static void logReport(String reason, JsonNode trace, boolean prettyPrint, ObjectMapper mapper) {
+        var report = ReportBuilderUtil.reduceTraceToReport(trace);
+        log.info("Decision report ({}):\n{}", reason, ReportTextRenderUtil.textReport(report, prettyPrint, mapper));
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void destroy() {
+        renderer.shutdown();
+    }
+
+}
@@ -0,0 +1,85 @@
+package io.sapl.demo.mqtt;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.pdp.AuthorizationSubscriptionInterceptor;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Remembers when the PDP received a subscription, so the
+ * {@link SampledReportingInterceptor} can determine the latency of its first
+ * decision. Subscriptions are identified by their JSON representation, as
+ * contained in the decision trace. Identical subscriptions received
+ * concurrently are kept in arrival order and taken one per first decision. If
+ * not enabled, subscriptions are passed through without cost.
+ * <p>
+ * Decisions never arrive for some subscriptions, e.g., cancelled ones. To bound
+ * the memory, the least recently used subscriptions are evicted when there are
+ * too many distinct subscriptions pending, and the oldest timestamps of a
+ * subscription are dropped when too many identical ones are pending.
+ */
+@RequiredArgsConstructor
+public class SubscriptionTimestamps implements AuthorizationSubscriptionInterceptor {
+
+    static final int MAXIMUM_PENDING_SUBSCRIPTIONS = 10_000;
+
+    static final int MAXIMUM_PENDING_PER_SUBSCRIPTION = 100;
+
+    private final ObjectMapper mapper;
+
+    private final boolean enabled;
+
+    private final Map<JsonNode, Deque<Long>> receivedAtNanos = new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<JsonNode, Deque<Long>> eldest) {
+            return size() > MAXIMUM_PENDING_SUBSCRIPTIONS;
+        }
+    };
+
+    @Override
+    public AuthorizationSubscription apply(AuthorizationSubscription authzSubscription) {
+        if (!enabled) {
+            return authzSubscription;
+        }
+        JsonNode key = mapper.valueToTree(authzSubscription);
+        var      now = System.nanoTime();
+        synchronized (receivedAtNanos) {
+            var pending = receivedAtNanos.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (pending.size() >= MAXIMUM_PENDING_PER_SUBSCRIPTION) {
+                pending.pollFirst();
+            }
+            pending.addLast(now);
+        }
+        return authzSubscription;
+    }
+
+    /**
+     * @return the time the earliest pending subscription with this JSON
+     *         representation was received in nanoseconds, or null if none is
+     *         pending
+     */
+    Long take(JsonNode authzSubscription) {
+        if (authzSubscription == null) {
+            return null;
+        }
+        synchronized (receivedAtNanos) {
+            var pending = receivedAtNanos.get(authzSubscription);
+            if (pending == null) {
+                return null;
+            }
+            var receivedAt = pending.pollFirst();
+            if (pending.isEmpty()) {
+                receivedAtNanos.remove(authzSubscription);
+            }
+            return receivedAt;
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.mqtt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Relies on the conflation settings of the application.yml (window 100ms,
+ * distinct payloads). The context is shared with the other tests, as only one
+ * embedded broker can bind the MQTT port.
+ */
+@Slf4j
+@SpringBootTest
+class MqttConflationTest {
+
+    private static final Duration PUBLISHING_TIME = Duration.ofSeconds(2L);
+
+    @Autowired
+    PolicyDecisionPoint pdp;
+
+    @Autowired
+    MqttTopicMultiplexer multiplexer;
+
+    @Autowired
+    MqttClientService mqttClient;
+
+    @Test
+    void when_statusPublishedAtOneKilohertz_then_mostEvaluationsAreSaved() throws Exception {
+        var decisions = new AtomicLong();
+        var stream    = pdp.decide(AuthorizationSubscription.of("user", "read", "sharedTime"))
+                .subscribe(decision -> decisions.incrementAndGet());
+        var received  = multiplexer.getReceivedMessages();
+        var forwarded = multiplexer.getForwardedMessages();
+        try {
+            var publisher = new MqttDataPublisher(mqttClient, "status", Duration.ofMillis(1L));
+            Thread.sleep(PUBLISHING_TIME.toMillis());
+            publisher.destroy();
+            Thread.sleep(500L);
+        } finally {
+            stream.dispose();
+        }
+
+        // at most one per window, plus the retained message and messages of the demo publisher
+        var receivedMessages = multiplexer.getReceivedMessages() - received;
+        var evaluations      = multiplexer.getForwardedMessages() - forwarded;
+        var maximumForwarded = PUBLISHING_TIME.dividedBy(Duration.ofMillis(100L)) + 3L;
+        log.info("received {} messages, triggered {} evaluations ({} saved), {} decisions", receivedMessages,
+                evaluations, receivedMessages - evaluations, decisions.get());
+
+        assertThat(receivedMessages).isGreaterThan(maximumForwarded * 10L);
+        assertThat(evaluations).isPositive().isLessThanOrEqualTo(maximumForwarded);
+        assertThat(decisions.get()).isPositive().isLessThanOrEqualTo(evaluations + 2L);
+    }
+
+    @Test
+    void when_samePayloadRepeated_then_forwardedOnce() throws InterruptedException {
+        var topic    = "test/distinct";
+        var messages = new LinkedBlockingQueue<String>();
+        var stream   = multiplexer.messages(topic).subscribe(messages::add);
+        try {
+            for (var i = 0; i < 50; i++)
+                mqttClient.publish(topic, "same", false).block(Duration.ofSeconds(5L));
+            assertThat(messages.poll(5L, TimeUnit.SECONDS)).isEqualTo("same");
+            assertThat(messages.poll(500L, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            stream.dispose();
+        }
+    }
+
+}
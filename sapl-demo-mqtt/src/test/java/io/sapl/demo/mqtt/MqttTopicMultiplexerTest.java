@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.mqtt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.Disposable;
+
+@SpringBootTest
+class MqttTopicMultiplexerTest {
+
+    private static final int DECISION_STREAMS = 10_000;
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30L);
+
+    @Autowired
+    PolicyDecisionPoint pdp;
+
+    @Autowired
+    MqttTopicMultiplexer multiplexer;
+
+    @Autowired
+    MqttClientService mqttClient;
+
+    @Test
+    void when_manyDecisionStreamsOnSameTopic_then_oneBrokerSubscription() throws InterruptedException {
+        var subscription      = AuthorizationSubscription.of("user", "read", "sharedTime");
+        var subscriptionsBase = multiplexer.getBrokerSubscriptions();
+        var decided           = new CountDownLatch(DECISION_STREAMS);
+        var streams           = new ArrayList<Disposable>(DECISION_STREAMS);
+        try {
+            for (var i = 0; i < DECISION_STREAMS; i++)
+                streams.add(pdp.decide(subscription).index().filter(decision -> decision.getT1() == 0L)
+                        .subscribe(decision -> decided.countDown()));
+            assertThat(decided.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+            assertThat(multiplexer.getBrokerSubscriptions() - subscriptionsBase).isOne();
+
+            // late joiners are served from the replayed message without a new subscription
+            assertThat(pdp.decide(subscription).blockFirst(Duration.ofSeconds(1L))).isNotNull();
+            assertThat(multiplexer.getBrokerSubscriptions() - subscriptionsBase).isOne();
+        } finally {
+            streams.forEach(Disposable::dispose);
+        }
+        assertThat(multiplexer.getBrokerSubscriptions()).isEqualTo(subscriptionsBase);
+    }
+
+    @Test
+    void when_lateJoiner_then_receivesRetainedMessage() throws InterruptedException {
+        var topic             = "test/retained";
+        var subscriptionsBase = multiplexer.getBrokerSubscriptions();
+        mqttClient.publish(topic, "hello", true).block(TIMEOUT);
+
+        var messages = new LinkedBlockingQueue<String>();
+        var first    = multiplexer.messages(topic).subscribe(messages::add);
+        try {
+            assertThat(messages.poll(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isEqualTo("hello");
+            assertThat(multiplexer.messages(topic).blockFirst(Duration.ofSeconds(1L))).isEqualTo("hello");
+            assertThat(multiplexer.getBrokerSubscriptions() - subscriptionsBase).isOne();
+        } finally {
+            first.dispose();
+        }
+        assertThat(multiplexer.getBrokerSubscriptions()).isEqualTo(subscriptionsBase);
+    }
+
+    @Test
+    void when_mqttPipConfigHasDefaultBroker_then_multiplexerUsesIt() throws IOException {
+        var pdpConfiguration = new ObjectMapper().readTree("""
+                { "variables": { "mqttPipConfig": {
+                    "defaultBrokerConfigName": "production",
+                    "brokerConfig": [
+                        { "name": "test", "brokerAddress": "test.local", "brokerPort": 1884, "clientId": "test-pip" },
+                        { "name": "production", "brokerAddress": "mqtt.local", "brokerPort": 8883, "clientId": "pip" }
+                    ] } } }
+                """);
+        assertThat(MqttTopicMultiplexer.brokerConfig(pdpConfiguration))
+                .isEqualTo(new MqttTopicMultiplexer.BrokerConfig("mqtt.local", 8883, "pip"));
+    }
+
+}
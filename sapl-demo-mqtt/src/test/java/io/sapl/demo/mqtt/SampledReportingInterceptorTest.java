@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.mqtt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.TracedDecision;
+
+class SampledReportingInterceptorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void onlyTracesOfSampledAndDeniedDecisionsAreCaptured() {
+        var interceptor = new SampledReportingInterceptor(mapper, new SubscriptionTimestamps(mapper, false), 3, true,
+                Duration.ZERO, false, 10);
+        var permit      = tracedDecision(AuthorizationDecision.PERMIT);
+        var deny        = tracedDecision(AuthorizationDecision.DENY);
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(interceptor.apply(permit)).isSameAs(permit);
+        }
+        interceptor.apply(deny);
+        interceptor.destroy();
+
+        verify(permit, times(2)).getTrace();
+        verify(deny, times(1)).getTrace();
+    }
+
+    @Test
+    void firstDecisionOfSlowSubscriptionIsReported()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        var timestamps   = new SubscriptionTimestamps(mapper, true);
+        var reason       = new CompletableFuture<String>();
+        var interceptor  = new SampledReportingInterceptor(timestamps, 0, false, Duration.ofMillis(20), 10,
+                (reportReason, reportTrace) -> reason.complete(reportReason));
+        var subscription = AuthorizationSubscription.of("willi", "read", "status");
+        var trace        = mapper.createObjectNode().set("authorizationSubscription", mapper.valueToTree(subscription));
+        var permit       = tracedDecision(AuthorizationDecision.PERMIT);
+        when(permit.getTrace()).thenReturn(trace);
+
+        timestamps.apply(subscription);
+        Thread.sleep(50L);
+        interceptor.apply(permit);
+
+        assertThat(reason.get(5, TimeUnit.SECONDS)).startsWith("latency");
+        assertThat(timestamps.take(trace.get("authorizationSubscription"))).isNull();
+        interceptor.destroy();
+    }
+
+    @Test
+    void identicalSubscriptionsKeepTheirOwnTimestamps() {
+        var timestamps   = new SubscriptionTimestamps(mapper, true);
+        var subscription = AuthorizationSubscription.of("willi", "read", "status");
+        var json         = mapper.valueToTree(subscription);
+
+        timestamps.apply(subscription);
+        timestamps.apply(subscription);
+
+        var first  = timestamps.take(json);
+        var second = timestamps.take(json);
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull().isGreaterThanOrEqualTo(first);
+        assertThat(timestamps.take(json)).isNull();
+    }
+
+    @Test
+    void leastRecentlyUsedSubscriptionsAreEvicted() {
+        var timestamps = new SubscriptionTimestamps(mapper, true);
+        var oldest     = AuthorizationSubscription.of("willi", "read", 0);
+        timestamps.apply(oldest);
+        for (int i = 1; i <= SubscriptionTimestamps.MAXIMUM_PENDING_SUBSCRIPTIONS; i++) {
+            timestamps.apply(AuthorizationSubscription.of("willi", "read", i));
+        }
+
+        assertThat(timestamps.take(mapper.valueToTree(oldest))).isNull();
+        assertThat(timestamps.take(mapper.valueToTree(AuthorizationSubscription.of("willi", "read", 1)))).isNotNull();
+    }
+
+    @Test
+    void nothingIsCapturedWhenAllReportingIsOff() {
+        var interceptor = new SampledReportingInterceptor(mapper, new SubscriptionTimestamps(mapper, false), 0, false,
+                Duration.ZERO, false, 10);
+        var deny        = tracedDecision(AuthorizationDecision.DENY);
+        interceptor.apply(deny);
+        interceptor.destroy();
+        verify(deny, never()).getTrace();
+    }
+
+    private TracedDecision tracedDecision(AuthorizationDecision decision) {
+        var tracedDecision = mock(TracedDecision.class);
+        when(tracedDecision.getAuthorizationDecision()).thenReturn(decision);
+        when(tracedDecision.getTrace()).thenReturn(mapper.createObjectNode());
+        return tracedDecision;
+    }
+
+}
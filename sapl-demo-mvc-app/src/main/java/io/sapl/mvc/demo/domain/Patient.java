@@ -15,7 +15,9 @@
  */
 package io.sapl.mvc.demo.domain;
 
+import io.sapl.mvc.demo.pip.PatientAttributeCacheInvalidator;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -25,6 +27,7 @@
 
 @Data
 @Entity
+@EntityListeners(PatientAttributeCacheInvalidator.class)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Patient {
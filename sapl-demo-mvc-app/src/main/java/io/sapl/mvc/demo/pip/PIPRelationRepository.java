@@ -15,6 +15,7 @@
  */
 package io.sapl.mvc.demo.pip;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.sapl.mvc.demo.domain.Relation;
@@ -23,4 +24,6 @@ public interface PIPRelationRepository {
 
     List<Relation> findByPatientId(Long id);
 
+    List<Relation> findByPatientIdIn(Collection<Long> ids);
+
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.sapl.api.interpreter.Val;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded cache for the attributes of the {@link PatientPIP}, keyed by patient
+ * id and holding the already converted {@link Val}.
+ *
+ * Entries are evicted in least-recently-used order once the configured maximum
+ * size is reached. The cache is kept consistent with the database by the
+ * {@link PatientAttributeCacheInvalidator}, which drops the entries of a
+ * patient whenever a Patient or Relation row of this patient changes.
+ *
+ * Invalidations happen immediately and, if a transaction is active, a second
+ * time after it completes. A lookup that started before an invalidation does
+ * not store its result, so a value read from a not yet committed or already
+ * outdated state never ends up in the cache.
+ */
+@Component
+public class PatientAttributeCache {
+
+    private record Lookup(Val value, long generation) {
+    }
+
+    private final Map<Long, Val> relatives;
+    private final Map<Long, Val> patientRecords;
+    private final AtomicLong     generation = new AtomicLong();
+    private final AtomicLong     hits       = new AtomicLong();
+    private final AtomicLong     misses     = new AtomicLong();
+
+    public PatientAttributeCache(@Value("${io.sapl.demo.patient-cache.maximum-size:1000}") int maximumSize) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("maximum cache size must be positive, was: " + maximumSize);
+        relatives      = boundedMap(maximumSize);
+        patientRecords = boundedMap(maximumSize);
+    }
+
+    /**
+     * @param patientId the id of the patient
+     * @param loader    loads the relatives asynchronously on a cache miss
+     * @return the cached or freshly loaded relatives of the patient
+     */
+    public Mono<Val> relatives(Long patientId, Function<Long, Mono<Val>> loader) {
+        return Mono.defer(() -> {
+            final var cached = lookup(relatives, patientId);
+            if (cached.value() != null)
+                return Mono.just(cached.value());
+            return loader.apply(patientId).doOnNext(value -> store(relatives, patientId, value, cached.generation()));
+        });
+    }
+
+    /**
+     * @param patientId the id of the patient
+     * @param loader    loads the patient record from the repository on a cache
+     *                  miss
+     * @return the cached or freshly loaded patient record
+     */
+    public Val patientRecord(Long patientId, Function<Long, Val> loader) {
+        return get(patientRecords, patientId, loader);
+    }
+
+    /**
+     * Drops all cached attributes of a patient.
+     *
+     * @param patientId the id of the patient
+     */
+    public void invalidate(Long patientId) {
+        if (patientId == null)
+            return;
+        evict(patientId);
+        afterTransaction(() -> evict(patientId));
+    }
+
+    /**
+     * Drops the cached relatives of all patients. Used when a relation changes in
+     * a way that does not tell which patient it belonged to before.
+     */
+    public void invalidateAllRelatives() {
+        evictAllRelatives();
+        afterTransaction(this::evictAllRelatives);
+    }
+
+    /**
+     * Drops all cached attributes.
+     */
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        relatives.clear();
+        patientRecords.clear();
+    }
+
+    public synchronized int size() {
+        return relatives.size() + patientRecords.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Val get(Map<Long, Val> cache, Long patientId, Function<Long, Val> loader) {
+        final var cached = lookup(cache, patientId);
+        if (cached.value() != null)
+            return cached.value();
+        final var value = loader.apply(patientId);
+        store(cache, patientId, value, cached.generation());
+        return value;
+    }
+
+    private synchronized Lookup lookup(Map<Long, Val> cache, Long patientId) {
+        final var cached = cache.get(patientId);
+        if (cached != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return new Lookup(cached, generation.get());
+    }
+
+    private synchronized void store(Map<Long, Val> cache, Long patientId, Val value, long loadedInGeneration) {
+        if (generation.get() == loadedInGeneration)
+            cache.put(patientId, value);
+    }
+
+    private synchronized void evict(Long patientId) {
+        generation.incrementAndGet();
+        relatives.remove(patientId);
+        patientRecords.remove(patientId);
+    }
+
+    private synchronized void evictAllRelatives() {
+        generation.incrementAndGet();
+        relatives.clear();
+    }
+
+    private static void afterTransaction(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                eviction.run();
+            }
+        });
+    }
+
+    private static Map<Long, Val> boundedMap(int maximumSize) {
+        return new LinkedHashMap<>(16, 0.75F, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Val> eldest) {
+                return size() > maximumSize;
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import io.sapl.mvc.demo.domain.Patient;
+import io.sapl.mvc.demo.domain.Relation;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps the {@link PatientAttributeCache} consistent with the database and
+ * publishes the changes to the {@link PatientChangeEvents}.
+ *
+ * It is registered as JPA entity listener on {@link Patient} and
+ * {@link Relation}, so every change made through the entity manager drops the
+ * cached attributes of the affected patient. Hibernate obtains the listener
+ * from the Spring application context, which is why it can be injected.
+ *
+ * The bulk JPQL updates of the PatientRepository bypass the entity manager and
+ * with it the entity listeners. These are covered by an aspect on the
+ * repository methods instead.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class PatientAttributeCacheInvalidator {
+
+    private final PatientAttributeCache cache;
+
+    private final PatientChangeEvents events;
+
+    @PostPersist
+    @PostRemove
+    void afterInsertOrDelete(Object entity) {
+        if (entity instanceof Patient patient)
+            patientChanged(patient.getId());
+        else if (entity instanceof Relation relation)
+            patientChanged(relation.getPatientId());
+    }
+
+    @PostUpdate
+    void afterUpdate(Object entity) {
+        if (entity instanceof Patient patient) {
+            patientChanged(patient.getId());
+        } else if (entity instanceof Relation) {
+            // the patient the relation belonged to before is not known here
+            cache.invalidateAllRelatives();
+            events.anyPatientChanged();
+        }
+    }
+
+    @AfterReturning("execution(* io.sapl.mvc.demo.domain.PatientRepository.update*ById(..)) && args(*, patientId)")
+    public void afterBulkUpdate(Long patientId) {
+        patientChanged(patientId);
+    }
+
+    private void patientChanged(Long patientId) {
+        cache.invalidate(patientId);
+        events.patientChanged(patientId);
+    }
+
+}
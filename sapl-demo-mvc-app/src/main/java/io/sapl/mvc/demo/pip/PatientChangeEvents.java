@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Lightweight in-process bus for changes of patients and their relations. It
+ * is fed by the {@link PatientAttributeCacheInvalidator} on every write to the
+ * Patient and Relation repositories and drives the streaming attributes of
+ * the {@link PatientPIP}.
+ *
+ * Events are published after the writing transaction has completed, so
+ * subscribers reloading the data on an event see the new state.
+ */
+@Component
+public class PatientChangeEvents {
+
+    /**
+     * A change of the data of a patient.
+     *
+     * @param patientId the id of the changed patient, or null if the change may
+     *                  affect any patient
+     */
+    public record PatientChanged(Long patientId) {
+
+        public boolean affects(Long id) {
+            return patientId == null || patientId.equals(id);
+        }
+
+    }
+
+    private static final Duration EMIT_RETRY_DURATION = Duration.ofMillis(100L);
+
+    private final Sinks.Many<PatientChanged> changes = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Publishes a change of a patient.
+     *
+     * @param patientId the id of the changed patient
+     */
+    public void patientChanged(Long patientId) {
+        if (patientId != null)
+            publish(new PatientChanged(patientId));
+    }
+
+    /**
+     * Publishes a change which may affect any patient.
+     */
+    public void anyPatientChanged() {
+        publish(new PatientChanged(null));
+    }
+
+    /**
+     * @param patientId the id of a patient
+     * @return the changes affecting the patient. Each subscriber buffers its
+     *         events, so slow subscribers never miss a change.
+     */
+    public Flux<PatientChanged> changesOf(Long patientId) {
+        return changes.asFlux().filter(change -> change.affects(patientId)).onBackpressureBuffer();
+    }
+
+    private void publish(PatientChanged change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            emit(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                emit(change);
+            }
+        });
+    }
+
+    private void emit(PatientChanged change) {
+        changes.emitNext(change, Sinks.EmitFailureHandler.busyLooping(EMIT_RETRY_DURATION));
+    }
+
+}
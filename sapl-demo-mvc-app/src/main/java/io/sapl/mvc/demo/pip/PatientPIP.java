@@ -15,8 +15,8 @@
  */
 package io.sapl.mvc.demo.pip;
 
-import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import org.springframework.stereotype.Service;
 
@@ -29,9 +29,11 @@
 import io.sapl.api.pip.PolicyInformationPoint;
 import io.sapl.api.validation.Number;
 import io.sapl.mvc.demo.domain.Patient;
-import io.sapl.mvc.demo.domain.Relation;
+import io.sapl.mvc.demo.pip.PatientChangeEvents.PatientChanged;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * This class realizes a custom Policy Information Point (PIP) which can
@@ -41,6 +43,11 @@
  *
  * As it is registered as a Spring @Service, the embedded Spring SAPL PDP will
  * pick it up automatically during the auto-configuration process.
+ *
+ * The attribute values are cached per patient in the
+ * {@link PatientAttributeCache}, which is invalidated whenever the underlying
+ * Patient or Relation rows change. The streaming variants of the attributes
+ * follow these changes via the {@link PatientChangeEvents}.
  */
 @Service
 @RequiredArgsConstructor
@@ -49,10 +56,21 @@ public class PatientPIP {
 
     private final ObjectMapper mapper;
 
-    private final PIPRelationRepository relationRepo;
+    private final RelationBatchLoader relationLoader;
 
     private final PIPPatientRepository patientRepo;
 
+    private final PatientAttributeCache cache;
+
+    private final PatientChangeEvents events;
+
+    private final SharedStreams<Long, Val> relativesStreams = new SharedStreams<>(
+            patientId -> changeDrivenStream(patientId, this::loadRelations));
+
+    private final SharedStreams<Long, Val> patientRecordStreams = new SharedStreams<>(
+            patientId -> changeDrivenStream(patientId, id -> Mono.fromCallable(() -> loadPatientRecord(id))
+                    .subscribeOn(Schedulers.boundedElastic())));
+
     /**
      * This attribute is accessed in a SAPL policy through an expression like this:
      *
@@ -65,20 +83,20 @@ public class PatientPIP {
      * shorthand in the policy.
      *
      * This implementation does not track changes in the repository, i.e. this is a
-     * non-streaming PIP.
+     * non-streaming PIP. Changes are still visible to the next evaluation, as they
+     * invalidate the cached value. The relatives of concurrent evaluations are
+     * loaded together by the {@link RelationBatchLoader}.
      * 
      * @param value     the id of the patient. This parameter must be a number, as
      *                  defined by the @Number annotation.
      * @param variables the variables in the current evaluation context
-     * @return the relatives of the patient as registered in the relationRepo.
+     * @return the relatives of the patient as registered in the relation
+     *         repository.
      *
      */
     @Attribute(name = "relatives")
     public Flux<Val> getRelations(@Number Val leftHandValue, Map<String, Val> variables) {
-        final List<Relation> relations     = relationRepo.findByPatientId(leftHandValue.get().asLong());
-        final List<String>   relationNames = relations.stream().map(Relation::getUsername).toList();
-        final JsonNode       jsonNode      = mapper.convertValue(relationNames, JsonNode.class);
-        return Flux.just(Val.of(jsonNode));
+        return cache.relatives(leftHandValue.get().asLong(), this::loadRelations).flux();
     }
 
     /**
@@ -93,7 +111,8 @@ public Flux<Val> getRelations(@Number Val leftHandValue, Map<String, Val> variab
      * a shorthand in the policy.
      *
      * This implementation does not track changes in the repository, i.e. this is a
-     * non-streaming PIP.
+     * non-streaming PIP. Changes are still visible to the next evaluation, as they
+     * invalidate the cached value.
      * 
      * @param patientId the id of the patient. This parameter must be a number, as
      *                  defined by the @Number annotation.
@@ -103,13 +122,70 @@ public Flux<Val> getRelations(@Number Val leftHandValue, Map<String, Val> variab
      */
     @Attribute(name = "patientRecord")
     public Flux<Val> getPatientRecord(@Number Val patientId, Map<String, Val> variables) {
+        return Flux.just(cache.patientRecord(patientId.get().asLong(), this::loadPatientRecord));
+    }
+
+    /**
+     * Streaming variant of the 'patient.relatives' attribute:
+     *
+     * resource.patientId.<patient.relativesStream>
+     *
+     * The stream emits the current relatives of the patient and a new value
+     * whenever a relation of the patient is added, changed, or removed. All
+     * subscriptions for the same patient share one upstream and unchanged values
+     * are not emitted again.
+     *
+     * @param patientId the id of the patient. This parameter must be a number, as
+     *                  defined by the @Number annotation.
+     * @param variables the variables in the current evaluation context
+     * @return the relatives of the patient, updated on every change.
+     */
+    @Attribute(name = "relativesStream")
+    public Flux<Val> streamRelations(@Number Val patientId, Map<String, Val> variables) {
+        return relativesStreams.get(patientId.get().asLong());
+    }
+
+    /**
+     * Streaming variant of the 'patient.patientRecord' attribute:
+     *
+     * resource.patientId.<patient.patientRecordStream>
+     *
+     * The stream emits the current patient record and a new value whenever the
+     * patient is changed, e.g., when the attending doctor changes. All
+     * subscriptions for the same patient share one upstream and unchanged values
+     * are not emitted again.
+     *
+     * @param patientId the id of the patient. This parameter must be a number, as
+     *                  defined by the @Number annotation.
+     * @param variables the variables in the current evaluation context
+     * @return the patient record or null, updated on every change.
+     */
+    @Attribute(name = "patientRecordStream")
+    public Flux<Val> streamPatientRecord(@Number Val patientId, Map<String, Val> variables) {
+        return patientRecordStreams.get(patientId.get().asLong());
+    }
+
+    private Flux<Val> changeDrivenStream(Long patientId, Function<Long, Mono<Val>> loader) {
+        final var load = Mono.defer(() -> loader.apply(patientId))
+                .onErrorResume(error -> Mono.just(Val.error(error.getMessage())));
+        // merge subscribes to the changes before triggering the initial load, so no
+        // change is missed
+        return Flux.merge(events.changesOf(patientId), Mono.just(new PatientChanged(patientId)))
+                .concatMap(change -> load).distinctUntilChanged();
+    }
+
+    private Mono<Val> loadRelations(Long patientId) {
+        return relationLoader.relativesOf(patientId)
+                .map(relationNames -> Val.of(mapper.convertValue(relationNames, JsonNode.class)));
+    }
+
+    private Val loadPatientRecord(Long patientId) {
         try {
-            final Patient  patient  = patientRepo.findById(patientId.get().asLong())
-                    .orElseThrow(PolicyEvaluationException::new);
+            final Patient  patient  = patientRepo.findById(patientId).orElseThrow(PolicyEvaluationException::new);
             final JsonNode jsonNode = mapper.convertValue(patient, JsonNode.class);
-            return Flux.just(Val.of(jsonNode));
+            return Val.of(jsonNode);
         } catch (IllegalArgumentException | PolicyEvaluationException e) {
-            return Flux.just(Val.NULL);
+            return Val.NULL;
         }
     }
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.sapl.mvc.demo.domain.Relation;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * DataLoader-style batching of the relation lookups of the {@link PatientPIP}.
+ *
+ * Concurrent lookups are gathered until either the maximum batch size is
+ * reached or the maximum wait time has passed since the first lookup of the
+ * batch. Then a single findByPatientIdIn query is issued for all patients of
+ * the batch and the results are fanned back out to the individual lookups.
+ *
+ * The loader publishes two metrics:
+ * <ul>
+ * <li>{@value #BATCH_SIZE_METRIC}: the number of lookups per query.</li>
+ * <li>{@value #WAIT_TIME_METRIC}: the time a lookup waited for its batch to be
+ * dispatched.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RelationBatchLoader implements DisposableBean {
+
+    public static final String BATCH_SIZE_METRIC = "sapl.demo.patient.relatives.batch.size";
+    public static final String WAIT_TIME_METRIC  = "sapl.demo.patient.relatives.batch.wait";
+
+    private static final Duration EMIT_RETRY_DURATION = Duration.ofMillis(100L);
+    private static final int      CONCURRENT_QUERIES  = 4;
+
+    private record Lookup(Long patientId, long enqueuedAt, Sinks.One<List<String>> result) {
+    }
+
+    private final PIPRelationRepository relationRepo;
+    private final DistributionSummary   batchSizes;
+    private final Timer                 waitTimes;
+    private final Sinks.Many<Lookup>    lookups = Sinks.many().unicast().onBackpressureBuffer();
+    private final Scheduler             queries = Schedulers.newBoundedElastic(CONCURRENT_QUERIES,
+            Integer.MAX_VALUE, "relation-batch-loader");
+    private final Disposable            dispatcher;
+
+    public RelationBatchLoader(PIPRelationRepository relationRepo, MeterRegistry registry,
+            @Value("${io.sapl.demo.patient-batch.maximum-size:50}") int maximumBatchSize,
+            @Value("${io.sapl.demo.patient-batch.maximum-wait:5ms}") Duration maximumWait) {
+        if (maximumBatchSize < 1)
+            throw new IllegalArgumentException("maximum batch size must be positive, was: " + maximumBatchSize);
+        this.relationRepo = relationRepo;
+        this.batchSizes   = DistributionSummary.builder(BATCH_SIZE_METRIC)
+                .description("number of patient.relatives lookups answered by one query").register(registry);
+        this.waitTimes    = Timer.builder(WAIT_TIME_METRIC)
+                .description("time a patient.relatives lookup waited for its batch").register(registry);
+        this.dispatcher   = lookups.asFlux().bufferTimeout(maximumBatchSize, maximumWait)
+                .flatMap(batch -> Mono.fromRunnable(() -> dispatch(batch)).subscribeOn(queries), CONCURRENT_QUERIES)
+                .subscribe();
+    }
+
+    /**
+     * @param patientId the id of a patient
+     * @return the user names of the relatives of the patient, loaded together
+     *         with other concurrent lookups.
+     */
+    public Mono<List<String>> relativesOf(Long patientId) {
+        return Mono.defer(() -> {
+            final var lookup = new Lookup(patientId, System.nanoTime(), Sinks.one());
+            lookups.emitNext(lookup, Sinks.EmitFailureHandler.busyLooping(EMIT_RETRY_DURATION));
+            return lookup.result().asMono();
+        });
+    }
+
+    private void dispatch(List<Lookup> batch) {
+        final var dispatchedAt = System.nanoTime();
+        batchSizes.record(batch.size());
+        batch.forEach(lookup -> waitTimes.record(Duration.ofNanos(dispatchedAt - lookup.enqueuedAt())));
+        try {
+            final var relatives = relativesOf(batch.stream().map(Lookup::patientId).collect(Collectors.toSet()));
+            batch.forEach(lookup -> lookup.result()
+                    .tryEmitValue(relatives.getOrDefault(lookup.patientId(), List.of())));
+        } catch (RuntimeException e) {
+            log.warn("Batched lookup of relatives failed: {}", e.getMessage());
+            batch.forEach(lookup -> lookup.result().tryEmitError(e));
+        }
+    }
+
+    private Map<Long, List<String>> relativesOf(Collection<Long> patientIds) {
+        return relationRepo.findByPatientIdIn(patientIds).stream().collect(Collectors
+                .groupingBy(Relation::getPatientId, Collectors.mapping(Relation::getUsername, Collectors.toList())));
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.dispose();
+        queries.dispose();
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Shares one hot stream per key between all subscribers.
+ *
+ * The stream of a key is created with the first subscriber and cancelled with
+ * the last one. Late subscribers immediately receive the last element.
+ *
+ * The subscribers of each key are counted within the atomic compute operations
+ * of the map. A stream is removed from the map only when its own count drops
+ * to zero, so a terminating stream never removes its successor, and a new
+ * subscriber never joins a stream that is already removed.
+ *
+ * @param <K> the key type
+ * @param <T> the element type
+ */
+final class SharedStreams<K, T> {
+
+    private final ConcurrentMap<K, Shared> streams = new ConcurrentHashMap<>();
+
+    private final Function<K, Flux<T>> source;
+
+    private final class Shared {
+
+        private final Flux<T> stream;
+
+        private int subscribers;
+
+        private Shared(K key) {
+            stream = source.apply(key).replay(1).refCount();
+        }
+    }
+
+    /**
+     * @param source creates the stream for a key, called once per key as long as
+     *               the key has subscribers
+     */
+    SharedStreams(Function<K, Flux<T>> source) {
+        this.source = source;
+    }
+
+    /**
+     * @param key the key of the stream
+     * @return the stream shared by all subscribers of the key
+     */
+    Flux<T> get(K key) {
+        return Flux.defer(() -> {
+            var shared = streams.compute(key, (k, existing) -> {
+                var joined = existing == null ? new Shared(k) : existing;
+                joined.subscribers++;
+                return joined;
+            });
+            return shared.stream.doFinally(signal -> release(key, shared));
+        });
+    }
+
+    private void release(K key, Shared shared) {
+        streams.computeIfPresent(key, (k, existing) -> {
+            if (existing != shared) {
+                return existing;
+            }
+            existing.subscribers--;
+            return existing.subscribers == 0 ? null : existing;
+        });
+    }
+
+    /**
+     * @return the number of keys with subscribers
+     */
+    int size() {
+        return streams.size();
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.mvc.demo.MvcDemoApplication;
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import io.sapl.mvc.demo.domain.Relation;
+
+@DirtiesContext
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PatientAttributeCacheTest {
+
+    private static final Long LENNY = 1L;
+
+    @Autowired
+    PatientPIP pip;
+
+    @Autowired
+    PatientAttributeCache cache;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    JpaPIPPatientRepository pipPatientRepository;
+
+    @Autowired
+    JpaPIPRelationRepository relationRepository;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @BeforeEach
+    void beforeEach() {
+        cache.invalidateAll();
+    }
+
+    @AfterEach
+    void afterEach() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_attributeRequestedTwice_then_repositoryIsQueriedOnce() {
+        var misses = cache.getMisses();
+        var hits   = cache.getHits();
+
+        var first  = relatives(LENNY);
+        var second = relatives(LENNY);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(cache.getMisses() - misses).isOne();
+        assertThat(cache.getHits() - hits).isOne();
+    }
+
+    @Test
+    void when_relationSaved_then_relativesAreInvalidated() {
+        assertThat(relatives(LENNY).get().toString()).doesNotContain("Horst");
+
+        var relation = relationRepository.save(new Relation("Horst", LENNY));
+        assertThat(relatives(LENNY).get().toString()).contains("Horst");
+
+        relationRepository.delete(relation);
+        assertThat(relatives(LENNY).get().toString()).doesNotContain("Horst");
+    }
+
+    @Test
+    void when_patientSaved_then_patientRecordIsInvalidated() {
+        assertThat(patientRecord(LENNY).get().get("attendingNurse").asText()).isEqualTo("Thomas");
+
+        var patient = pipPatientRepository.findById(LENNY).orElseThrow();
+        patient.setAttendingNurse("Brigitte");
+        pipPatientRepository.save(patient);
+
+        assertThat(patientRecord(LENNY).get().get("attendingNurse").asText()).isEqualTo("Brigitte");
+    }
+
+    @Test
+    void when_bulkUpdateBypassesEntityListeners_then_patientRecordIsInvalidated() {
+        assertThat(patientRecord(LENNY).get().get("roomNumber").asText()).isEqualTo("A.3.47");
+
+        setAuthentication("Julia");
+        patientRepository.updateRoomNumberById("B.1.01", LENNY);
+
+        assertThat(patientRecord(LENNY).get().get("roomNumber").asText()).isEqualTo("B.1.01");
+    }
+
+    @Test
+    void when_invalidatedWhileLoading_then_loadedValueIsNotCached() {
+        var loads = new AtomicInteger();
+        cache.patientRecord(42L, id -> {
+            cache.invalidate(id);
+            return Val.of(loads.incrementAndGet());
+        });
+
+        assertThat(cache.patientRecord(42L, id -> Val.of(loads.incrementAndGet()))).isEqualTo(Val.of(2));
+        assertThat(cache.patientRecord(42L, id -> Val.of(loads.incrementAndGet()))).isEqualTo(Val.of(2));
+    }
+
+    @Test
+    void when_maximumSizeExceeded_then_leastRecentlyUsedIsEvicted() {
+        var small = new PatientAttributeCache(2);
+        small.patientRecord(1L, id -> Val.of(1));
+        small.patientRecord(2L, id -> Val.of(2));
+        small.patientRecord(1L, id -> Val.of(-1));
+        small.patientRecord(3L, id -> Val.of(3));
+
+        assertThat(small.size()).isEqualTo(2);
+        assertThat(small.patientRecord(1L, id -> Val.of(-1))).isEqualTo(Val.of(1));
+        assertThat(small.patientRecord(2L, id -> Val.of(-2))).isEqualTo(Val.of(-2));
+        assertThatThrownBy(() -> new PatientAttributeCache(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Val relatives(Long patientId) {
+        return pip.getRelations(Val.of(patientId), Map.of()).blockFirst();
+    }
+
+    private Val patientRecord(Long patientId) {
+        return pip.getPatientRecord(Val.of(patientId), Map.of()).blockFirst();
+    }
+
+    private void setAuthentication(String username) {
+        var user  = userDetailsService.loadUserByUsername(username);
+        var authn = new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(authn);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.mvc.demo.MvcDemoApplication;
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import io.sapl.mvc.demo.domain.Relation;
+import lombok.SneakyThrows;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+@DirtiesContext
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PatientPIPStreamTest {
+
+    private static final Long LENNY = 1L;
+
+    private static final Long KARL = 2L;
+
+    @Autowired
+    PatientPIP pip;
+
+    @Autowired
+    PatientChangeEvents events;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    JpaPIPRelationRepository relationRepository;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @AfterEach
+    void afterEach() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @SneakyThrows
+    void when_relationAdded_then_relativesStreamEmitsNewRelatives() {
+        var values       = new LinkedBlockingQueue<Val>();
+        var subscription = subscribe(pip.streamRelations(Val.of(LENNY), Map.of()), values);
+        try {
+            assertThat(next(values).get().toString()).doesNotContain("Brigitte");
+
+            var relation = relationRepository.save(new Relation("Brigitte", LENNY));
+            assertThat(next(values).get().toString()).contains("Brigitte");
+
+            relationRepository.delete(relation);
+            assertThat(next(values).get().toString()).doesNotContain("Brigitte");
+        } finally {
+            subscription.dispose();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void when_attendingDoctorChanged_then_patientRecordStreamEmitsNewRecord() {
+        var values       = new LinkedBlockingQueue<Val>();
+        var subscription = subscribe(pip.streamPatientRecord(Val.of(KARL), Map.of()), values);
+        try {
+            assertThat(next(values).get().get("attendingDoctor").asText()).isEqualTo("Alina");
+
+            setAuthentication("Alina");
+            patientRepository.updateAttendingDoctorById("Peter", KARL);
+            assertThat(next(values).get().get("attendingDoctor").asText()).isEqualTo("Peter");
+        } finally {
+            subscription.dispose();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void when_changeDoesNotAlterValue_then_nothingIsEmitted() {
+        var values       = new LinkedBlockingQueue<Val>();
+        var subscription = subscribe(pip.streamRelations(Val.of(LENNY), Map.of()), values);
+        try {
+            next(values);
+            events.patientChanged(LENNY);
+            events.anyPatientChanged();
+            assertThat(values.poll(500L, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            subscription.dispose();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void when_samePatientStreamedTwice_then_bothReceiveTheSameValue() {
+        var first  = pip.streamRelations(Val.of(LENNY), Map.of());
+        var second = pip.streamRelations(Val.of(LENNY), Map.of());
+
+        var firstValues        = new LinkedBlockingQueue<Val>();
+        var secondValues       = new LinkedBlockingQueue<Val>();
+        var firstSubscription  = subscribe(first, firstValues);
+        var secondSubscription = subscribe(second, secondValues);
+        try {
+            assertThat(next(secondValues)).isEqualTo(next(firstValues));
+        } finally {
+            firstSubscription.dispose();
+            secondSubscription.dispose();
+        }
+    }
+
+    private static Disposable subscribe(Flux<Val> stream, BlockingQueue<Val> values) {
+        return stream.subscribe(values::add);
+    }
+
+    private static Val next(BlockingQueue<Val> values) throws InterruptedException {
+        var value = values.poll(5L, TimeUnit.SECONDS);
+        assertThat(value).as("value emitted within timeout").isNotNull();
+        return value;
+    }
+
+    private void setAuthentication(String username) {
+        var user  = userDetailsService.loadUserByUsername(username);
+        var authn = new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(authn);
+    }
+
+}
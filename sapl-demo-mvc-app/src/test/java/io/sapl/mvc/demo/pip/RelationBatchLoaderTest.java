@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.api.interpreter.Val;
+import io.sapl.mvc.demo.MvcDemoApplication;
+import lombok.SneakyThrows;
+import reactor.core.publisher.Flux;
+
+@DirtiesContext
+@SpringBootTest(classes = MvcDemoApplication.class, properties = { "io.sapl.demo.patient-batch.maximum-size=10",
+        "io.sapl.demo.patient-batch.maximum-wait=20ms" })
+class RelationBatchLoaderTest {
+
+    private static final Long LENNY = 1L;
+
+    private static final Long KARL = 2L;
+
+    private static final Long UNKNOWN = 99L;
+
+    private static final int THREADS = 8;
+
+    private static final int LOOKUPS_PER_THREAD = 50;
+
+    @Autowired
+    RelationBatchLoader loader;
+
+    @Autowired
+    PatientPIP pip;
+
+    @Autowired
+    PatientAttributeCache cache;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Test
+    @SneakyThrows
+    void when_concurrentLookups_then_batchedIntoFewQueries_and_resultsFannedOutCorrectly() {
+        var batchesBefore = registry.get(RelationBatchLoader.BATCH_SIZE_METRIC).summary().count();
+        var lookups       = THREADS * LOOKUPS_PER_THREAD;
+        var patientIds    = List.of(LENNY, KARL, UNKNOWN);
+        var start         = new CountDownLatch(1);
+        var executor      = Executors.newFixedThreadPool(THREADS);
+        try {
+            var results = new ArrayList<Future<List<Map.Entry<Long, List<String>>>>>();
+            for (var thread = 0; thread < THREADS; thread++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return Flux.range(0, LOOKUPS_PER_THREAD).map(i -> patientIds.get(i % patientIds.size()))
+                            .flatMap(id -> loader.relativesOf(id).map(names -> Map.entry(id, names))).collectList()
+                            .block();
+                }));
+            }
+            start.countDown();
+            for (var result : results) {
+                assertThat(result.get(10L, TimeUnit.SECONDS)).hasSize(LOOKUPS_PER_THREAD).allSatisfy(entry -> {
+                    if (LENNY.equals(entry.getKey()))
+                        assertThat(entry.getValue()).containsExactly("Dominic");
+                    else if (KARL.equals(entry.getKey()))
+                        assertThat(entry.getValue()).containsExactlyInAnyOrder("Julia", "Alina", "Janosch");
+                    else
+                        assertThat(entry.getValue()).isEmpty();
+                });
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var batchSizes = registry.get(RelationBatchLoader.BATCH_SIZE_METRIC).summary();
+        var batches    = batchSizes.count() - batchesBefore;
+        assertThat(batches).isPositive().isLessThan(lookups);
+        assertThat(batchSizes.max()).isLessThanOrEqualTo(10.0);
+        assertThat(registry.get(RelationBatchLoader.WAIT_TIME_METRIC).timer().count())
+                .isGreaterThanOrEqualTo(lookups);
+    }
+
+    @Test
+    void when_concurrentAttributeLookups_then_eachEvaluationGetsItsPatientsRelatives() {
+        cache.invalidateAll();
+        var relatives = Flux.range(0, 100).map(i -> i % 2 == 0 ? LENNY : KARL)
+                .flatMap(id -> pip.getRelations(Val.of(id), Map.of()).map(value -> Map.entry(id, value)))
+                .collectList().block();
+
+        assertThat(relatives).hasSize(100).allSatisfy(entry -> {
+            var names = entry.getValue().get().toString();
+            if (LENNY.equals(entry.getKey()))
+                assertThat(names).contains("Dominic").doesNotContain("Julia");
+            else
+                assertThat(names).contains("Julia", "Alina", "Janosch").doesNotContain("Dominic");
+        });
+    }
+
+}
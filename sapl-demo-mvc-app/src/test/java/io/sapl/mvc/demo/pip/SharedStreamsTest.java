@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class SharedStreamsTest {
+
+    @Test
+    void when_manySubscribersOfOneKey_then_sourceIsSubscribedOnce() {
+        var subscriptions = new AtomicInteger();
+        var sink          = Sinks.many().multicast().<String>directBestEffort();
+        var streams       = new SharedStreams<String, String>(
+                key -> sink.asFlux().doOnSubscribe(subscription -> subscriptions.incrementAndGet()));
+
+        var disposables = new ArrayList<Disposable>();
+        for (int i = 0; i < 1_000; i++) {
+            disposables.add(streams.get("key").subscribe());
+        }
+        assertThat(subscriptions).hasValue(1);
+        assertThat(streams.size()).isEqualTo(1);
+
+        disposables.forEach(Disposable::dispose);
+        assertThat(streams.size()).isZero();
+    }
+
+    @Test
+    void when_lateSubscriber_then_lastValueIsReplayed() {
+        var sink    = Sinks.many().multicast().<String>directBestEffort();
+        var streams = new SharedStreams<String, String>(key -> sink.asFlux());
+        var first   = streams.get("key").subscribe();
+        sink.tryEmitNext("value");
+
+        assertThat(streams.get("key").blockFirst()).isEqualTo("value");
+        first.dispose();
+    }
+
+    @Test
+    void when_streamTerminatesAfterResubscription_then_successorIsKept() {
+        var subscriptions = new AtomicInteger();
+        var streams       = new SharedStreams<String, Integer>(
+                key -> Flux.<Integer>never().doOnSubscribe(subscription -> subscriptions.incrementAndGet()));
+
+        var first = streams.get("key").subscribe();
+        first.dispose();
+        var second = streams.get("key").subscribe();
+        var third  = streams.get("key").subscribe();
+        assertThat(subscriptions).hasValue(2);
+        assertThat(streams.size()).isEqualTo(1);
+
+        second.dispose();
+        assertThat(streams.size()).isEqualTo(1);
+        third.dispose();
+        assertThat(streams.size()).isZero();
+    }
+
+}
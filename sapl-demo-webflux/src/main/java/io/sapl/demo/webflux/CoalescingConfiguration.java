@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.sapl.api.pdp.PolicyDecisionPoint;
+
+/**
+ * Wraps the PDP of the application in a {@link CoalescingPolicyDecisionPoint},
+ * unless {@code io.sapl.demo.coalescing.enabled} is set to false. The grace
+ * period after the last subscriber left is set with
+ * {@code io.sapl.demo.coalescing.grace-period}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "io.sapl.demo.coalescing.enabled", havingValue = "true", matchIfMissing = true)
+public class CoalescingConfiguration {
+
+    @Bean
+    static BeanPostProcessor coalescingPolicyDecisionPointPostProcessor(
+            @Value("${io.sapl.demo.coalescing.grace-period:5s}") Duration gracePeriod) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof PolicyDecisionPoint pdp && !(bean instanceof CoalescingPolicyDecisionPoint)) {
+                    return new CoalescingPolicyDecisionPoint(pdp, gracePeriod);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * A PDP wrapper sharing one decision stream between all concurrent subscribers
+ * of the same subscription. E.g., when many SSE clients open the same stream,
+ * the policies are evaluated and the PIP attributes (like {@code <time.now>})
+ * are subscribed only once.
+ * <p>
+ * Subscriptions are identical if their JSON representations are equal
+ * regardless of the order of object keys. The shared stream replays the latest
+ * decision to late subscribers. It is subscribed to the delegate with the first
+ * subscriber and cancelled after the last subscriber left and no new subscriber
+ * arrived within the grace period.
+ * <p>
+ * Multi-subscriptions are passed to the delegate unchanged.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CoalescingPolicyDecisionPoint implements PolicyDecisionPoint {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, Flux<AuthorizationDecision>> sharedDecisions = new ConcurrentHashMap<>();
+
+    private final PolicyDecisionPoint delegate;
+
+    private final Duration gracePeriod;
+
+    @Override
+    public Flux<AuthorizationDecision> decide(AuthorizationSubscription authzSubscription) {
+        var key = canonicalKey(authzSubscription);
+        return Flux.defer(() -> sharedDecisions.computeIfAbsent(key, k -> share(k, authzSubscription)));
+    }
+
+    private Flux<AuthorizationDecision> share(String key, AuthorizationSubscription authzSubscription) {
+        log.debug("Sharing decisions for {}", key);
+        var sharedFlux = new AtomicReference<Flux<AuthorizationDecision>>();
+        sharedFlux.set(delegate.decide(authzSubscription).doFinally(signal -> {
+            log.debug("Stopped sharing decisions ({}) for {}", signal, key);
+            // a newer shared stream may already be registered for the key
+            sharedDecisions.remove(key, sharedFlux.get());
+        }).replay(1).refCount(1, gracePeriod));
+        return sharedFlux.get();
+    }
+
+    @Override
+    public Flux<IdentifiableAuthorizationDecision> decide(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decide(multiAuthzSubscription);
+    }
+
+    @Override
+    public Flux<MultiAuthorizationDecision> decideAll(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decideAll(multiAuthzSubscription);
+    }
+
+    /**
+     * The wrapper replaces the PDP bean, so it has to take over its destroy
+     * method.
+     */
+    public void destroy() {
+        if (delegate instanceof EmbeddedPolicyDecisionPoint embeddedPdp) {
+            embeddedPdp.destroy();
+        }
+    }
+
+    /**
+     * @return the number of decision streams currently shared
+     */
+    public int sharedStreams() {
+        return sharedDecisions.size();
+    }
+
+    static String canonicalKey(AuthorizationSubscription authzSubscription) {
+        var canonical = new StringBuilder();
+        appendCanonical(MAPPER.valueToTree(authzSubscription), canonical);
+        return canonical.toString();
+    }
+
+    private static void appendCanonical(JsonNode node, StringBuilder canonical) {
+        if (node.isObject()) {
+            var fieldNames = new ArrayList<String>();
+            node.fieldNames().forEachRemaining(fieldNames::add);
+            fieldNames.sort(null);
+            canonical.append('{');
+            for (var fieldName : fieldNames) {
+                canonical.append(MAPPER.getNodeFactory().textNode(fieldName)).append(':');
+                appendCanonical(node.get(fieldName), canonical);
+                canonical.append(',');
+            }
+            canonical.append('}');
+        } else if (node.isArray()) {
+            canonical.append('[');
+            for (var element : node) {
+                appendCanonical(element, canonical);
+                canonical.append(',');
+            }
+            canonical.append(']');
+        } else {
+            canonical.append(node);
+        }
+    }
+
+}
@@ -166,9 +166,18 @@ public Flux<Integer> getFluxNumbers() {
      * The @EnforceTillDenied annotation cannot be combined with any other
      * enforcement annotation.
      * 
+     * The subscription is set explicitly to the values the policies use. By
+     * default, it would contain details of the individual HTTP request and
+     * session. So all clients of this stream send the same subscription, and the
+     * {@link CoalescingPolicyDecisionPoint} can serve them with one shared
+     * decision stream. Note that the subject is the constant 'anonymous' instead
+     * of the authentication of the client, so policies for this stream must not
+     * depend on the user.
+     * 
      * @return a protected sequence of messages, each delayed by 500ms.
      */
-    @EnforceTillDenied
+    @EnforceTillDenied(subject = "'anonymous'", action = "{http: {contextPath: '/enforcetilldeny'}}",
+            resource = "'demo stream'")
     public Flux<String> getFluxString() {
         return Flux.just(
                 "<-obligation will log different messages over time until access denied. Access is denied within the last 20 seconds of a local minute->)")
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.stereotype.Component;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.api.pip.EnvironmentAttribute;
+import io.sapl.api.pip.PolicyInformationPoint;
+import reactor.core.publisher.Flux;
+
+/**
+ * Hot, shared replacement for {@code <time.now>}.
+ *
+ * The built-in time PIP starts a timer for every subscription. As almost every
+ * policy of this demo checks the current time, N open decision streams result
+ * in N timers ticking every second. This PIP provides the current time from a
+ * single timer shared by all subscriptions. The timer starts with the first
+ * subscriber, stops when the last subscriber cancels, and late subscribers
+ * immediately receive the most recent tick.
+ *
+ * Only attributes without per-subscription parameters can be shared this way.
+ */
+@Component
+@PolicyInformationPoint(name = "clock", description = "Current time from a timer shared by all subscriptions.")
+public class SharedClockPolicyInformationPoint {
+
+    static final Duration TICK_INTERVAL = Duration.ofSeconds(1L);
+
+    private final Flux<Val> now;
+
+    public SharedClockPolicyInformationPoint() {
+        this(Clock.systemUTC());
+    }
+
+    SharedClockPolicyInformationPoint(Clock clock) {
+        now = Flux.interval(Duration.ZERO, TICK_INTERVAL).map(tick -> Val.of(Instant.now(clock).toString()))
+                .replay(1).refCount();
+    }
+
+    /**
+     * @return the current UTC time in ISO-8601 format, updated every second.
+     */
+    @EnvironmentAttribute(name = "now", docs = "Current UTC time in ISO-8601, updated every second. Usage: <clock.now>")
+    public Flux<Val> now() {
+        return now;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+
+class CoalescingPolicyDecisionPointTests {
+
+    private static final AuthorizationSubscription SUBSCRIPTION = AuthorizationSubscription.of("anonymous", "read",
+            "demo stream");
+
+    @Test
+    void concurrentSubscribersShareOneUpstreamUntilGracePeriodAfterLastLeft() throws InterruptedException {
+        var upstreamSubscriptions = new AtomicInteger();
+        var delegate              = mock(PolicyDecisionPoint.class);
+        when(delegate.decide(SUBSCRIPTION)).thenReturn(Flux.<AuthorizationDecision>never()
+                .startWith(AuthorizationDecision.PERMIT).doOnSubscribe(s -> upstreamSubscriptions.incrementAndGet()));
+        var pdp = new CoalescingPolicyDecisionPoint(delegate, Duration.ofMillis(100));
+
+        var first  = pdp.decide(SUBSCRIPTION).subscribe();
+        var second = pdp.decide(SUBSCRIPTION).subscribe();
+        assertThat(pdp.decide(SUBSCRIPTION).blockFirst()).isEqualTo(AuthorizationDecision.PERMIT);
+        assertThat(upstreamSubscriptions).hasValue(1);
+        verify(delegate, times(1)).decide(SUBSCRIPTION);
+
+        first.dispose();
+        second.dispose();
+        assertThat(pdp.sharedStreams()).isEqualTo(1);
+        Thread.sleep(500L);
+        assertThat(pdp.sharedStreams()).isZero();
+
+        pdp.decide(SUBSCRIPTION).blockFirst();
+        assertThat(upstreamSubscriptions).hasValue(2);
+    }
+
+    @Test
+    void keyIgnoresOrderOfObjectKeys() throws Exception {
+        var mapper = new ObjectMapper();
+        var first  = AuthorizationSubscription.of(mapper.readTree("{\"a\":1,\"b\":{\"c\":2,\"d\":3}}"), "read",
+                "demo stream");
+        var second = AuthorizationSubscription.of(mapper.readTree("{\"b\":{\"d\":3,\"c\":2},\"a\":1}"), "read",
+                "demo stream");
+        assertThat(CoalescingPolicyDecisionPoint.canonicalKey(first))
+                .isEqualTo(CoalescingPolicyDecisionPoint.canonicalKey(second));
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+@Slf4j
+class SharedClockPolicyInformationPointTests {
+
+    private static final int SUBSCRIBERS = 10_000;
+
+    private static final String HOOK = "countScheduledTasks";
+
+    private final AtomicLong scheduledTasks = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        Schedulers.onScheduleHook(HOOK, task -> {
+            scheduledTasks.incrementAndGet();
+            return task;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        Schedulers.resetOnScheduleHook(HOOK);
+    }
+
+    @Test
+    void when_manySubscribers_then_oneTimerIsShared() throws InterruptedException {
+        var pip = new SharedClockPolicyInformationPoint();
+
+        var unshared = measure("per-subscription timers",
+                () -> Flux.interval(Duration.ZERO, SharedClockPolicyInformationPoint.TICK_INTERVAL));
+        var shared   = measure("shared timer", pip::now);
+
+        assertThat(unshared.scheduledTasks()).isGreaterThanOrEqualTo(SUBSCRIBERS);
+        assertThat(shared.scheduledTasks()).isLessThanOrEqualTo(2L);
+    }
+
+    @Test
+    void when_lastSubscriberCancels_then_timerStops_and_restartsOnNextSubscriber() {
+        var pip   = new SharedClockPolicyInformationPoint();
+        var first = pip.now().blockFirst();
+        scheduledTasks.set(0L);
+
+        var second = pip.now().blockFirst();
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(Instant.parse(second.getText())).isAfterOrEqualTo(Instant.parse(first.getText()));
+        assertThat(scheduledTasks).hasValue(1L);
+    }
+
+    private record Measurement(long scheduledTasks, long heapBytes) {
+    }
+
+    private Measurement measure(String name, Supplier<Flux<?>> stream) throws InterruptedException {
+        var subscriptions = new ArrayList<Disposable>(SUBSCRIBERS);
+        var firstValues   = new CountDownLatch(SUBSCRIBERS);
+        var heapBefore    = usedHeap();
+        scheduledTasks.set(0L);
+        for (var i = 0; i < SUBSCRIBERS; i++)
+            subscriptions.add(stream.get().subscribe(value -> firstValues.countDown()));
+        assertThat(firstValues.await(10L, TimeUnit.SECONDS)).isTrue();
+        var measurement = new Measurement(scheduledTasks.get(), usedHeap() - heapBefore);
+        dispose(subscriptions);
+        log.info("{} subscribers with {}: {} scheduled tasks, ~{} KiB heap", SUBSCRIBERS, name,
+                measurement.scheduledTasks(), measurement.heapBytes() / 1024);
+        return measurement;
+    }
+
+    private static void dispose(List<Disposable> subscriptions) {
+        subscriptions.forEach(Disposable::dispose);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}